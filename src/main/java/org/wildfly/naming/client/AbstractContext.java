@@ -34,7 +34,10 @@ import javax.naming.OperationNotSupportedException;
 
 import org.wildfly.common.Assert;
 import org.wildfly.naming.client._private.Messages;
+import org.wildfly.naming.client.util.EnvironmentUtils;
 import org.wildfly.naming.client.util.FastHashtable;
+import org.wildfly.naming.client.util.NamingUtils;
+import org.wildfly.naming.security.SimpleNamePermissions;
 
 /**
  * An abstract {@code Context} implementation which does not support federation of naming systems (i.e. binding
@@ -252,6 +255,148 @@ public abstract class AbstractContext implements Context, AutoCloseable {
 
     protected abstract CloseableNamingEnumeration<Binding> listBindingsNative(Name name) throws NamingException;
 
+    /**
+     * List the entries of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching entries
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> listMatching(final String name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        Assert.checkNotNullParam("pattern", pattern);
+        return listMatchingNative(getNativeNameParser().parse(name), pattern);
+    }
+
+    /**
+     * List the entries of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching entries
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> listMatching(final Name name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        Assert.checkNotNullParam("pattern", pattern);
+        if (name instanceof CompositeName) {
+            return listMatchingNative(decomposeName((CompositeName) name), pattern);
+        } else {
+            return listMatchingNative(name, pattern);
+        }
+    }
+
+    /**
+     * List the entries of a context whose names match a pattern.  By default, the whole context is listed and then
+     * filtered.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching entries
+     * @throws NamingException if the context could not be listed
+     */
+    protected CloseableNamingEnumeration<NameClassPair> listMatchingNative(Name name, String pattern) throws NamingException {
+        return NamingUtils.filterByName(listNative(name), pattern);
+    }
+
+    /**
+     * List the bindings of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching bindings
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<Binding> listBindingsMatching(final String name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        Assert.checkNotNullParam("pattern", pattern);
+        return listBindingsMatchingNative(getNativeNameParser().parse(name), pattern);
+    }
+
+    /**
+     * List the bindings of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching bindings
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<Binding> listBindingsMatching(final Name name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        Assert.checkNotNullParam("pattern", pattern);
+        if (name instanceof CompositeName) {
+            return listBindingsMatchingNative(decomposeName((CompositeName) name), pattern);
+        } else {
+            return listBindingsMatchingNative(name, pattern);
+        }
+    }
+
+    /**
+     * List the bindings of a context whose names match a pattern.  By default, the whole context is listed and then
+     * filtered.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching bindings
+     * @throws NamingException if the context could not be listed
+     */
+    protected CloseableNamingEnumeration<Binding> listBindingsMatchingNative(Name name, String pattern) throws NamingException {
+        return NamingUtils.filterByName(listBindingsNative(name), pattern);
+    }
+
+    /**
+     * List the entries of a subtree of this context.  The names of the returned entries are composite names relative to
+     * the subtree's root, and each context is followed by its entries.
+     *
+     * @param name the name of the subtree's root
+     * @param maxDepth the maximum depth of the returned entries, where 1 returns only the entries of the named context,
+     *     or 0 to return all entries
+     * @return the entries of the subtree
+     * @throws NamingException if the subtree could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> walk(final String name, final int maxDepth) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        return walkNative(getNativeNameParser().parse(name), maxDepth);
+    }
+
+    /**
+     * List the entries of a subtree of this context.  The names of the returned entries are composite names relative to
+     * the subtree's root, and each context is followed by its entries.
+     *
+     * @param name the name of the subtree's root
+     * @param maxDepth the maximum depth of the returned entries, where 1 returns only the entries of the named context,
+     *     or 0 to return all entries
+     * @return the entries of the subtree
+     * @throws NamingException if the subtree could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> walk(final Name name, final int maxDepth) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        if (name instanceof CompositeName) {
+            return walkNative(decomposeName((CompositeName) name), maxDepth);
+        } else {
+            return walkNative(name, maxDepth);
+        }
+    }
+
+    /**
+     * List the entries of a subtree of this context.  By default, each context of the subtree is listed in turn.
+     *
+     * @param name the name of the subtree's root
+     * @param maxDepth the maximum depth of the returned entries, or 0 to return all entries
+     * @return the entries of the subtree
+     * @throws NamingException if the subtree could not be listed
+     */
+    protected CloseableNamingEnumeration<NameClassPair> walkNative(Name name, int maxDepth) throws NamingException {
+        return NamingUtils.walk(this, name, maxDepth);
+    }
+
     public void destroySubcontext(final String name) throws NamingException {
         Assert.checkNotNullParam("name", name);
         // reuse empty check below
@@ -345,11 +490,15 @@ public abstract class AbstractContext implements Context, AutoCloseable {
     }
 
     public Object addToEnvironment(final String propName, final Object propVal) {
-        return environment.put(propName, propVal);
+        final Object old = environment.put(propName, propVal);
+        EnvironmentUtils.environmentChanged(environment, propName);
+        return old;
     }
 
     public Object removeFromEnvironment(final String propName) {
-        return environment.remove(propName);
+        final Object old = environment.remove(propName);
+        EnvironmentUtils.environmentChanged(environment, propName);
+        return old;
     }
 
     public FastHashtable<String, Object> getEnvironment() throws NamingException {
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.wildfly.naming.client.remote.RemoteNamingContextFactory;
+import org.wildfly.naming.client.remote.RemoteNamingProviderFactory;
+
+/**
+ * A static index of the naming provider and context factories contained in this library.  These factories are
+ * consulted before any which are discovered using {@link java.util.ServiceLoader}, so that operations using only them
+ * need no service discovery at all; being referenced directly, they are also visible to ahead-of-time compilers without
+ * further configuration.  This index must be kept consistent with the factories annotated with {@code MetaInfServices}.
+ * <p>
+ * Consequently, the indexed factories take priority over discovered ones: a discovered factory is used only for
+ * schemes which no indexed factory supports, and cannot override an indexed factory for a scheme which it does
+ * support.  Previously, all factories were discovered, and the one found first for a scheme was used, so a deployment
+ * could override a scheme of this library by providing its own factory ahead of it on the class path.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class FactoryIndex {
+    private FactoryIndex() {
+    }
+
+    static final List<NamingProviderFactory> PROVIDER_FACTORIES = Collections.unmodifiableList(Arrays.<NamingProviderFactory>asList(
+        new RemoteNamingProviderFactory()
+    ));
+
+    static final List<NamingContextFactory> CONTEXT_FACTORIES = Collections.unmodifiableList(Arrays.<NamingContextFactory>asList(
+        new RemoteNamingContextFactory()
+    ));
+
+    static boolean contains(final Object factory) {
+        final Class<?> clazz = factory.getClass();
+        for (NamingProviderFactory providerFactory : PROVIDER_FACTORIES) {
+            if (providerFactory.getClass() == clazz) {
+                return true;
+            }
+        }
+        for (NamingContextFactory contextFactory : CONTEXT_FACTORIES) {
+            if (contextFactory.getClass() == clazz) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
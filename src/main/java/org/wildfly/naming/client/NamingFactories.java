@@ -0,0 +1,156 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.wildfly.naming.client._private.Messages;
+
+/**
+ * The naming provider and context factories and the naming interceptors which are visible to a class loader.  Service
+ * loaders are not thread-safe, so each one is iterated exactly once, under a lock, and the discovered factories are
+ * retained in immutable lists which may afterwards be read without any locking.  The factories of the
+ * {@link FactoryIndex} are excluded.
+ * <p>
+ * Instances are shared by all root contexts using the same class loader.  The cache is weakly keyed by class loader,
+ * but the discovered factories refer to their class loader, so the instances are held softly: the class loader of an
+ * undeployed application is retained until the instance is cleared under memory pressure, and only then can it be
+ * collected.  No object monitors are held while loading, so that virtual threads waiting for discovery to complete do
+ * not pin their carrier threads.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class NamingFactories {
+    private static final ReentrantLock cacheLock = new ReentrantLock();
+    private static final WeakHashMap<ClassLoader, SoftReference<NamingFactories>> cache = new WeakHashMap<>();
+
+    private final ServiceLoader<NamingProviderFactory> providerLoader;
+    private final ServiceLoader<NamingContextFactory> contextLoader;
+    private final ServiceLoader<NamingInterceptor> interceptorLoader;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile List<NamingProviderFactory> providerFactories;
+    private volatile List<NamingContextFactory> contextFactories;
+    private volatile List<NamingInterceptor> interceptors;
+
+    /**
+     * Get the shared instance for a class loader.
+     *
+     * @param classLoader the class loader
+     * @return the instance (not {@code null})
+     */
+    static NamingFactories forClassLoader(final ClassLoader classLoader) {
+        cacheLock.lock();
+        try {
+            final SoftReference<NamingFactories> ref = cache.get(classLoader);
+            NamingFactories namingFactories = ref == null ? null : ref.get();
+            if (namingFactories == null) {
+                namingFactories = new NamingFactories(classLoader);
+                cache.put(classLoader, new SoftReference<>(namingFactories));
+            }
+            return namingFactories;
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private NamingFactories(final ClassLoader classLoader) {
+        providerLoader = ServiceLoader.load(NamingProviderFactory.class, classLoader);
+        contextLoader = ServiceLoader.load(NamingContextFactory.class, classLoader);
+        interceptorLoader = ServiceLoader.load(NamingInterceptor.class, classLoader);
+    }
+
+    List<NamingProviderFactory> getProviderFactories() {
+        List<NamingProviderFactory> providerFactories = this.providerFactories;
+        if (providerFactories == null) {
+            lock.lock();
+            try {
+                providerFactories = this.providerFactories;
+                if (providerFactories == null) {
+                    this.providerFactories = providerFactories = load(providerLoader);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return providerFactories;
+    }
+
+    List<NamingContextFactory> getContextFactories() {
+        List<NamingContextFactory> contextFactories = this.contextFactories;
+        if (contextFactories == null) {
+            lock.lock();
+            try {
+                contextFactories = this.contextFactories;
+                if (contextFactories == null) {
+                    this.contextFactories = contextFactories = load(contextLoader);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return contextFactories;
+    }
+
+    List<NamingInterceptor> getInterceptors() {
+        List<NamingInterceptor> interceptors = this.interceptors;
+        if (interceptors == null) {
+            lock.lock();
+            try {
+                interceptors = this.interceptors;
+                if (interceptors == null) {
+                    final List<NamingInterceptor> list = new ArrayList<>(load(interceptorLoader));
+                    // stable, so interceptors of equal priority remain in discovery order
+                    list.sort(Comparator.comparingInt(NamingInterceptor::getPriority));
+                    this.interceptors = interceptors = Collections.unmodifiableList(list);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return interceptors;
+    }
+
+    private static <T> List<T> load(ServiceLoader<T> loader) {
+        final List<T> list = new ArrayList<>();
+        final Iterator<T> iterator = loader.iterator();
+        for (;;) try {
+            if (! iterator.hasNext()) break;
+            final T item = iterator.next();
+            // the indexed factories are consulted separately
+            if (! FactoryIndex.contains(item)) {
+                list.add(item);
+            }
+        } catch (ServiceConfigurationError error) {
+            Messages.log.serviceConfigFailed(error);
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client;
+
+import javax.naming.NamingException;
+
+/**
+ * An interceptor of naming operations on a {@link WildFlyRootContext}.  Interceptors are discovered using
+ * {@link java.util.ServiceLoader} from the same class loader as the {@linkplain NamingProviderFactory naming provider
+ * factories}, and are invoked in order of increasing {@linkplain #getPriority() priority}, each being responsible for
+ * calling {@link NamingInvocation#proceed()} to pass the operation on to the next interceptor and ultimately to the
+ * naming provider.  When no interceptors are installed, operations are dispatched directly.
+ * <p>
+ * Interceptors are shared by every context using the same class loader, so they must be thread-safe.  Naming listener
+ * registration is not intercepted.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public interface NamingInterceptor {
+    /**
+     * Intercept a naming operation.
+     *
+     * @param invocation the invocation (not {@code null})
+     * @return the result of the operation, as described by {@link NamingOperation}
+     * @throws NamingException if the operation failed
+     */
+    Object intercept(NamingInvocation invocation) throws NamingException;
+
+    /**
+     * Get the priority of this interceptor.  Interceptors with a lower priority are invoked first, and so see the
+     * operation before, and its result after, those with a higher priority.  Interceptors with the same priority are
+     * invoked in discovery order.
+     *
+     * @return the priority
+     */
+    default int getPriority() {
+        return 0;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client;
+
+import java.util.List;
+
+import javax.naming.Name;
+import javax.naming.NamingException;
+
+import org.wildfly.naming.client.util.FastHashtable;
+
+/**
+ * A naming operation passing through the {@linkplain NamingInterceptor interceptors} of a root context.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class NamingInvocation {
+    private final WildFlyRootContext rootContext;
+    private final List<NamingInterceptor> interceptors;
+    private final NamingOperation operation;
+    private final String urlScheme;
+    private final Name name;
+    private final Name newName;
+    private final Object object;
+    private final String pattern;
+    private final int maxDepth;
+    private int index;
+
+    NamingInvocation(final WildFlyRootContext rootContext, final List<NamingInterceptor> interceptors, final NamingOperation operation, final String urlScheme, final Name name, final Name newName, final Object object, final String pattern, final int maxDepth) {
+        this.rootContext = rootContext;
+        this.interceptors = interceptors;
+        this.operation = operation;
+        this.urlScheme = urlScheme;
+        this.name = name;
+        this.newName = newName;
+        this.object = object;
+        this.pattern = pattern;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Get the operation being performed.
+     *
+     * @return the operation (not {@code null})
+     */
+    public NamingOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the URL scheme of the name, if any.
+     *
+     * @return the URL scheme, or {@code null} if the name has no URL scheme
+     */
+    public String getUrlScheme() {
+        return urlScheme;
+    }
+
+    /**
+     * Get the name of the operation, with any URL scheme removed.  For {@link NamingOperation#RENAME RENAME} this is
+     * the old name.
+     *
+     * @return the name (not {@code null})
+     */
+    public Name getName() {
+        return name;
+    }
+
+    /**
+     * Get the new name of a {@link NamingOperation#RENAME RENAME} operation, with any URL scheme removed.
+     *
+     * @return the new name, or {@code null} if the operation is not a rename
+     */
+    public Name getNewName() {
+        return newName;
+    }
+
+    /**
+     * Get the object of a {@link NamingOperation#BIND BIND} or {@link NamingOperation#REBIND REBIND} operation.
+     *
+     * @return the object, or {@code null} if there is none
+     */
+    public Object getObject() {
+        return object;
+    }
+
+    /**
+     * Get the pattern of a {@link NamingOperation#LIST_MATCHING LIST_MATCHING} or
+     * {@link NamingOperation#LIST_BINDINGS_MATCHING LIST_BINDINGS_MATCHING} operation.
+     *
+     * @return the pattern, or {@code null} if the operation is not a matching list
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Get the maximum depth of a {@link NamingOperation#WALK WALK} operation.
+     *
+     * @return the maximum depth, or 0 if the walk is not limited or the operation is not a walk
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Get the environment of the root context performing the operation.
+     *
+     * @return the environment (not {@code null})
+     * @throws NamingException if the environment could not be acquired
+     */
+    public FastHashtable<String, Object> getEnvironment() throws NamingException {
+        return rootContext.getEnvironment();
+    }
+
+    /**
+     * Pass the operation on to the next interceptor, or to the naming provider if there are no more interceptors.
+     *
+     * @return the result of the operation
+     * @throws NamingException if the operation failed
+     */
+    public Object proceed() throws NamingException {
+        final int index = this.index;
+        if (index == interceptors.size()) {
+            return rootContext.perform(operation, urlScheme, name, newName, object, pattern, maxDepth);
+        }
+        this.index = index + 1;
+        try {
+            return interceptors.get(index).intercept(this);
+        } finally {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client;
+
+/**
+ * The naming operations which are seen by {@linkplain NamingInterceptor naming interceptors}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public enum NamingOperation {
+    /**
+     * {@link javax.naming.Context#lookup(javax.naming.Name) lookup}; the result is the looked up object.
+     */
+    LOOKUP,
+    /**
+     * {@link javax.naming.Context#lookupLink(javax.naming.Name) lookupLink}; the result is the looked up object.
+     */
+    LOOKUP_LINK,
+    /**
+     * {@link javax.naming.Context#bind(javax.naming.Name, Object) bind}; the result is {@code null}.
+     */
+    BIND,
+    /**
+     * {@link javax.naming.Context#rebind(javax.naming.Name, Object) rebind}; the result is {@code null}.
+     */
+    REBIND,
+    /**
+     * {@link javax.naming.Context#unbind(javax.naming.Name) unbind}; the result is {@code null}.
+     */
+    UNBIND,
+    /**
+     * {@link javax.naming.Context#rename(javax.naming.Name, javax.naming.Name) rename}; the result is {@code null}.
+     */
+    RENAME,
+    /**
+     * {@link javax.naming.Context#list(javax.naming.Name) list}; the result is a naming enumeration of name-class
+     * pairs.
+     */
+    LIST,
+    /**
+     * {@link javax.naming.Context#listBindings(javax.naming.Name) listBindings}; the result is a naming enumeration of
+     * bindings.
+     */
+    LIST_BINDINGS,
+    /**
+     * {@link javax.naming.Context#createSubcontext(javax.naming.Name) createSubcontext}; the result is the new context.
+     */
+    CREATE_SUBCONTEXT,
+    /**
+     * {@link javax.naming.Context#destroySubcontext(javax.naming.Name) destroySubcontext}; the result is {@code null}.
+     */
+    DESTROY_SUBCONTEXT,
+    /**
+     * {@link WildFlyRootContext#walk(javax.naming.Name, int) walk}, with the {@linkplain NamingInvocation#getMaxDepth()
+     * maximum depth} of the walk; the result is a closeable naming enumeration of name-class pairs.
+     */
+    WALK,
+    /**
+     * {@link WildFlyRootContext#listMatching(javax.naming.Name, String) listMatching}, with the
+     * {@linkplain NamingInvocation#getPattern() pattern} to match; the result is a closeable naming enumeration of
+     * name-class pairs.
+     */
+    LIST_MATCHING,
+    /**
+     * {@link WildFlyRootContext#listBindingsMatching(javax.naming.Name, String) listBindingsMatching}, with the
+     * {@linkplain NamingInvocation#getPattern() pattern} to match; the result is a closeable naming enumeration of
+     * bindings.
+     */
+    LIST_BINDINGS_MATCHING,
+    ;
+}
@@ -0,0 +1,373 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client;
+
+import static org.wildfly.naming.client._private.Messages.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.naming.Binding;
+import javax.naming.CompositeName;
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.NameClassPair;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+
+import org.wildfly.common.Assert;
+import org.wildfly.naming.client.store.RelativeFederatingContext;
+import org.wildfly.naming.client.util.FastHashtable;
+import org.wildfly.naming.client.util.NamingUtils;
+
+/**
+ * A federating context which performs each read operation on several member contexts in parallel, such as a local
+ * store and the contexts of two remote clusters.  The operation completes with the result selected by the
+ * {@linkplain Policy policy}, and the operations still running on the other members are cancelled; it fails only if
+ * it fails on every member.  Modifications are made to the first member, which has the highest priority.
+ * <p>
+ * The member contexts belong to this context, and are closed when it is closed.  The enumerations listed from members
+ * whose result is not used are closed, but looked up objects are not, since they may be shared.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ScatterGatherContext extends AbstractFederatingContext {
+
+    private final List<Context> contexts;
+    private final Policy policy;
+    private final ExecutorService executor;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param environment the environment to use (not copied)
+     * @param contexts the member contexts, in decreasing order of priority (must not be {@code null} or empty)
+     * @param policy the policy which selects the result (must not be {@code null})
+     * @param executor the executor which runs the operations on the members, or {@code null} to use a shared
+     *     executor
+     */
+    public ScatterGatherContext(final FastHashtable<String, Object> environment, final List<Context> contexts, final Policy policy, final ExecutorService executor) {
+        super(environment);
+        Assert.checkNotNullParam("contexts", contexts);
+        Assert.checkMinimumParameter("contexts.size()", 1, contexts.size());
+        Assert.checkNotNullParam("policy", policy);
+        this.contexts = new ArrayList<>(contexts);
+        this.policy = policy;
+        this.executor = executor == null ? ExecutorHolder.EXECUTOR : executor;
+    }
+
+    /**
+     * The policy which selects the result of an operation among the members on which it succeeded.
+     */
+    public enum Policy {
+        /**
+         * Complete with the first result to arrive.
+         */
+        FIRST_SUCCESS,
+        /**
+         * Complete with the result of the member with the highest priority on which the operation succeeds.  A
+         * result is used as soon as the operation has failed on every member with a higher priority.
+         */
+        HIGHEST_PRIORITY
+    }
+
+    public Object lookup(final Name name) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        if (name.isEmpty()) {
+            return new RelativeFederatingContext(new FastHashtable<>(getEnvironment()), this, new CompositeName());
+        }
+        // each member federates the whole name itself
+        return scatter(context -> context.lookup(name), ScatterGatherContext::keep);
+    }
+
+    public Object lookupLink(final Name name) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        if (name.isEmpty()) {
+            return lookup(name);
+        }
+        return scatter(context -> context.lookupLink(name), ScatterGatherContext::keep);
+    }
+
+    public CloseableNamingEnumeration<NameClassPair> list(final Name name) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        return listNative(name);
+    }
+
+    public CloseableNamingEnumeration<Binding> listBindings(final Name name) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        return listBindingsNative(name);
+    }
+
+    protected Object lookupNative(final Name name) throws NamingException {
+        return lookup(name);
+    }
+
+    protected Object lookupLinkNative(final Name name) throws NamingException {
+        return lookupLink(name);
+    }
+
+    protected CloseableNamingEnumeration<NameClassPair> listNative(final Name name) throws NamingException {
+        return scatter(context -> CloseableNamingEnumeration.fromEnumeration(context.list(name)), ScatterGatherContext::discard);
+    }
+
+    protected CloseableNamingEnumeration<Binding> listBindingsNative(final Name name) throws NamingException {
+        return scatter(context -> CloseableNamingEnumeration.fromEnumeration(context.listBindings(name)), ScatterGatherContext::discard);
+    }
+
+    protected void bindNative(final Name name, final Object obj) throws NamingException {
+        contexts.get(0).bind(name, obj);
+    }
+
+    protected void rebindNative(final Name name, final Object obj) throws NamingException {
+        contexts.get(0).rebind(name, obj);
+    }
+
+    protected void unbindNative(final Name name) throws NamingException {
+        contexts.get(0).unbind(name);
+    }
+
+    protected void renameNative(final Name oldName, final Name newName) throws NamingException {
+        contexts.get(0).rename(oldName, newName);
+    }
+
+    protected void destroySubcontextNative(final Name name) throws NamingException {
+        contexts.get(0).destroySubcontext(name);
+    }
+
+    protected Context createSubcontextNative(final Name name) throws NamingException {
+        return contexts.get(0).createSubcontext(name);
+    }
+
+    public void close() {
+        for (Context context : contexts) {
+            NamingUtils.safeClose(context);
+        }
+    }
+
+    public String getNameInNamespace() throws NamingException {
+        return "";
+    }
+
+    /**
+     * Perform an operation on every member.
+     *
+     * @param operation the operation
+     * @param discarder the action which releases a result which is not used, if the result was produced for this call
+     * @return the selected result
+     * @throws NamingException if the operation failed on every member
+     */
+    private <T> T scatter(final Operation<T> operation, final Consumer<? super T> discarder) throws NamingException {
+        final List<Context> contexts = this.contexts;
+        final int count = contexts.size();
+        if (count == 1) {
+            return operation.run(contexts.get(0));
+        }
+        final Gather<T> gather = new Gather<>(count, policy, discarder);
+        final List<Future<?>> futures = new ArrayList<>(count);
+        // results are unmarshalled on the executor threads, using the caller's context class loader
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            for (int i = 0; i < count; i ++) {
+                final int index = i;
+                final Context context = contexts.get(i);
+                try {
+                    futures.add(executor.submit(() -> {
+                        final Thread thread = Thread.currentThread();
+                        final ClassLoader oldClassLoader = thread.getContextClassLoader();
+                        thread.setContextClassLoader(classLoader);
+                        try {
+                            gather.run(index, context, operation);
+                        } finally {
+                            thread.setContextClassLoader(oldClassLoader);
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    gather.run(index, context, operation);
+                }
+            }
+            return gather.await();
+        } finally {
+            // the losing operations are interrupted; any results they still produce are discarded
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    static void discard(final NamingEnumeration<?> result) {
+        try {
+            result.close();
+        } catch (NamingException ignored) {
+        }
+    }
+
+    static void keep(final Object result) {
+        // a looked up object, such as a context, may be shared, so it is not closed
+    }
+
+    interface Operation<T> {
+        T run(Context context) throws NamingException;
+    }
+
+    /**
+     * The results of one operation on all of the members.
+     */
+    static final class Gather<T> {
+        private static final int PENDING = 0;
+        private static final int SUCCEEDED = 1;
+        private static final int FAILED = 2;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition completed = lock.newCondition();
+        private final Policy policy;
+        private final Consumer<? super T> discarder;
+        private final int[] states;
+        private final Object[] results;
+        private final NamingException[] failures;
+        private int failedCount;
+        private int winner = -1;
+        private boolean done;
+
+        Gather(final int count, final Policy policy, final Consumer<? super T> discarder) {
+            this.policy = policy;
+            this.discarder = discarder;
+            states = new int[count];
+            results = new Object[count];
+            failures = new NamingException[count];
+        }
+
+        void run(final int index, final Context context, final Operation<T> operation) {
+            final T result;
+            try {
+                result = operation.run(context);
+            } catch (NamingException e) {
+                failed(index, e);
+                return;
+            } catch (Throwable t) {
+                failed(index, log.federatedOperationFailed(t));
+                return;
+            }
+            succeeded(index, result);
+        }
+
+        private void succeeded(final int index, final T result) {
+            lock.lock();
+            try {
+                if (! done) {
+                    states[index] = SUCCEEDED;
+                    results[index] = result;
+                    decide();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            discarder.accept(result);
+        }
+
+        private void failed(final int index, final NamingException failure) {
+            lock.lock();
+            try {
+                if (! done) {
+                    states[index] = FAILED;
+                    failures[index] = failure;
+                    failedCount ++;
+                    decide();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void decide() {
+            assert lock.isHeldByCurrentThread();
+            for (int i = 0; i < states.length; i ++) {
+                if (states[i] == SUCCEEDED) {
+                    winner = i;
+                    break;
+                } else if (states[i] == PENDING && policy == Policy.HIGHEST_PRIORITY) {
+                    // a member with a higher priority may yet succeed
+                    break;
+                }
+            }
+            if (winner != -1 || failedCount == states.length) {
+                done = true;
+                completed.signalAll();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T await() throws NamingException {
+            final List<T> discarded = new ArrayList<>();
+            lock.lock();
+            try {
+                try {
+                    while (! done) {
+                        completed.await();
+                    }
+                } catch (InterruptedException e) {
+                    done = true;
+                    Thread.currentThread().interrupt();
+                    throw log.operationInterrupted();
+                } finally {
+                    for (int i = 0; i < states.length; i ++) {
+                        if (states[i] == SUCCEEDED && i != winner) {
+                            discarded.add((T) results[i]);
+                        }
+                    }
+                }
+                if (winner == -1) {
+                    // report the failure of the member with the highest priority
+                    final NamingException failure = failures[0];
+                    for (int i = 1; i < failures.length; i ++) {
+                        failure.addSuppressed(failures[i]);
+                    }
+                    throw failure;
+                }
+                return (T) results[winner];
+            } finally {
+                lock.unlock();
+                for (T result : discarded) {
+                    discarder.accept(result);
+                }
+            }
+        }
+    }
+
+    static final class ExecutorHolder {
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(task -> {
+            final Thread thread = new Thread(task, "naming client federation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private ExecutorHolder() {
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client;
+
+import static org.wildfly.naming.client._private.Messages.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+import javax.naming.Context;
+import javax.naming.NamingException;
+
+import org.wildfly.common.Assert;
+import org.wildfly.naming.client.util.FastHashtable;
+import org.wildfly.naming.client.util.NamingUtils;
+
+/**
+ * A context factory which produces a {@link ScatterGatherContext} over several configured naming providers.  The
+ * factory handles its name scheme whichever provider is given for the operation, because each of its members has its
+ * own provider.
+ * <p>
+ * Since the members must be configured, this factory is not discovered as a service.  Instead, an initial context whose
+ * environment has the {@link #PROVIDER_URLS} attribute resolves names without a URL scheme through a scatter-gather
+ * context over the listed providers.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class ScatterGatherContextFactory implements NamingContextFactory {
+
+    /**
+     * An environment attribute giving a comma-separated list of provider URLs, in decreasing order of priority.  When
+     * it is set, each operation on a name without a URL scheme is performed on all of the listed providers at once,
+     * through a {@link ScatterGatherContext}, instead of on the {@linkplain Context#PROVIDER_URL provider URL}.
+     */
+    public static final String PROVIDER_URLS = "org.wildfly.naming.client.scatter-gather.provider-urls";
+
+    /**
+     * An environment attribute giving the {@linkplain ScatterGatherContext.Policy policy} of the scatter-gather
+     * context created for the {@linkplain #PROVIDER_URLS provider URLs}.  The default is {@code FIRST_SUCCESS}.
+     */
+    public static final String POLICY = "org.wildfly.naming.client.scatter-gather.policy";
+
+    private final String nameScheme;
+    private final List<Member> members;
+    private final ScatterGatherContext.Policy policy;
+    private final ExecutorService executor;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param nameScheme the name scheme which this factory handles, or {@code null} for names without a scheme
+     * @param members the members, in decreasing order of priority (must not be {@code null} or empty)
+     * @param policy the policy which selects the result of each operation (must not be {@code null})
+     * @param executor the executor which runs the operations on the members, or {@code null} to use a shared
+     *     executor
+     */
+    public ScatterGatherContextFactory(final String nameScheme, final List<Member> members, final ScatterGatherContext.Policy policy, final ExecutorService executor) {
+        Assert.checkNotNullParam("members", members);
+        Assert.checkMinimumParameter("members.size()", 1, members.size());
+        Assert.checkNotNullParam("policy", policy);
+        this.nameScheme = nameScheme;
+        this.members = new ArrayList<>(members);
+        this.policy = policy;
+        this.executor = executor;
+    }
+
+    public boolean supportsUriScheme(final NamingProvider namingProvider, final String nameScheme) {
+        return Objects.equals(this.nameScheme, nameScheme);
+    }
+
+    public Context createRootContext(final NamingProvider namingProvider, final String nameScheme, final FastHashtable<String, Object> env) throws NamingException {
+        final List<Context> contexts = new ArrayList<>(members.size());
+        try {
+            for (Member member : members) {
+                contexts.add(member.getContextFactory().createRootContext(member.getNamingProvider(), member.getNameScheme(), new FastHashtable<>(env)));
+            }
+        } catch (Throwable t) {
+            for (Context context : contexts) {
+                NamingUtils.safeClose(context);
+            }
+            throw t;
+        }
+        return new ScatterGatherContext(env, contexts, policy, executor);
+    }
+
+    static ScatterGatherContext.Policy getPolicy(final FastHashtable<String, Object> env) throws NamingException {
+        final Object policy = env.get(POLICY);
+        if (policy == null) {
+            return ScatterGatherContext.Policy.FIRST_SUCCESS;
+        }
+        try {
+            return ScatterGatherContext.Policy.valueOf(policy.toString().trim());
+        } catch (IllegalArgumentException e) {
+            throw log.invalidScatterGatherPolicy(policy);
+        }
+    }
+
+    /**
+     * A member of a scatter-gather context: a naming provider, and the factory of its root context.
+     */
+    public static final class Member {
+        private final NamingProvider namingProvider;
+        private final NamingContextFactory contextFactory;
+        private final String nameScheme;
+
+        /**
+         * Construct a new instance.
+         *
+         * @param namingProvider the naming provider (must not be {@code null})
+         * @param contextFactory the factory of the provider's root context (must not be {@code null})
+         * @param nameScheme the name scheme with which the root context is created, or {@code null} for none
+         */
+        public Member(final NamingProvider namingProvider, final NamingContextFactory contextFactory, final String nameScheme) {
+            Assert.checkNotNullParam("namingProvider", namingProvider);
+            Assert.checkNotNullParam("contextFactory", contextFactory);
+            this.namingProvider = namingProvider;
+            this.contextFactory = contextFactory;
+            this.nameScheme = nameScheme;
+        }
+
+        /**
+         * Get the naming provider.
+         *
+         * @return the naming provider (not {@code null})
+         */
+        public NamingProvider getNamingProvider() {
+            return namingProvider;
+        }
+
+        /**
+         * Get the factory of the provider's root context.
+         *
+         * @return the context factory (not {@code null})
+         */
+        public NamingContextFactory getContextFactory() {
+            return contextFactory;
+        }
+
+        /**
+         * Get the name scheme with which the root context is created.
+         *
+         * @return the name scheme, or {@code null} for none
+         */
+        public String getNameScheme() {
+            return nameScheme;
+        }
+    }
+}
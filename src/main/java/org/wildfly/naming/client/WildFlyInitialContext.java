@@ -25,8 +25,11 @@ package org.wildfly.naming.client;
 
 import java.util.Hashtable;
 
+import javax.naming.Binding;
 import javax.naming.Context;
 import javax.naming.InitialContext;
+import javax.naming.Name;
+import javax.naming.NameClassPair;
 import javax.naming.NamingException;
 import javax.naming.NoInitialContextException;
 
@@ -73,6 +76,10 @@ public final class WildFlyInitialContext extends InitialContext {
         return rootContext.getEnvironment();
     }
 
+    public void close() throws NamingException {
+        rootContext.close();
+    }
+
     public Object addToEnvironment(final String propName, final Object propVal) throws NamingException {
         return rootContext.addToEnvironment(propName, propVal);
     }
@@ -81,6 +88,84 @@ public final class WildFlyInitialContext extends InitialContext {
         return rootContext.removeFromEnvironment(propName);
     }
 
+    /**
+     * List the entries of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match
+     * @return the matching entries
+     * @throws NamingException if the context could not be listed
+     * @see WildFlyRootContext#listMatching(Name, String)
+     */
+    public CloseableNamingEnumeration<NameClassPair> listMatching(final String name, final String pattern) throws NamingException {
+        return rootContext.listMatching(name, pattern);
+    }
+
+    /**
+     * List the entries of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match
+     * @return the matching entries
+     * @throws NamingException if the context could not be listed
+     * @see WildFlyRootContext#listMatching(Name, String)
+     */
+    public CloseableNamingEnumeration<NameClassPair> listMatching(final Name name, final String pattern) throws NamingException {
+        return rootContext.listMatching(name, pattern);
+    }
+
+    /**
+     * List the bindings of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match
+     * @return the matching bindings
+     * @throws NamingException if the context could not be listed
+     * @see WildFlyRootContext#listBindingsMatching(Name, String)
+     */
+    public CloseableNamingEnumeration<Binding> listBindingsMatching(final String name, final String pattern) throws NamingException {
+        return rootContext.listBindingsMatching(name, pattern);
+    }
+
+    /**
+     * List the bindings of a context whose names match a pattern.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match
+     * @return the matching bindings
+     * @throws NamingException if the context could not be listed
+     * @see WildFlyRootContext#listBindingsMatching(Name, String)
+     */
+    public CloseableNamingEnumeration<Binding> listBindingsMatching(final Name name, final String pattern) throws NamingException {
+        return rootContext.listBindingsMatching(name, pattern);
+    }
+
+    /**
+     * List the entries of a subtree.
+     *
+     * @param name the name of the subtree's root
+     * @param maxDepth the maximum depth of the returned entries, or 0 to return all entries
+     * @return the entries of the subtree
+     * @throws NamingException if the subtree could not be listed
+     * @see WildFlyRootContext#walk(Name, int)
+     */
+    public CloseableNamingEnumeration<NameClassPair> walk(final String name, final int maxDepth) throws NamingException {
+        return rootContext.walk(name, maxDepth);
+    }
+
+    /**
+     * List the entries of a subtree.
+     *
+     * @param name the name of the subtree's root
+     * @param maxDepth the maximum depth of the returned entries, or 0 to return all entries
+     * @return the entries of the subtree
+     * @throws NamingException if the subtree could not be listed
+     * @see WildFlyRootContext#walk(Name, int)
+     */
+    public CloseableNamingEnumeration<NameClassPair> walk(final Name name, final int maxDepth) throws NamingException {
+        return rootContext.walk(name, maxDepth);
+    }
+
     public String getNameInNamespace() throws NamingException {
         return "";
     }
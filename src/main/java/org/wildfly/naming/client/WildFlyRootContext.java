@@ -27,9 +27,12 @@ import static java.security.AccessController.doPrivileged;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.PrivilegedAction;
-import java.util.Iterator;
-import java.util.ServiceConfigurationError;
-import java.util.ServiceLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.Binding;
 import javax.naming.CompositeName;
@@ -40,20 +43,25 @@ import javax.naming.NameClassPair;
 import javax.naming.NameParser;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingListener;
 
 import org.wildfly.common.Assert;
 import org.wildfly.naming.client._private.Messages;
+import org.wildfly.naming.client.util.EnvironmentUtils;
 import org.wildfly.naming.client.util.FastHashtable;
 import org.wildfly.naming.client.util.NamingUtils;
+import org.wildfly.naming.security.SimpleNamePermissions;
 
 /**
  * A root context which locates providers based on the {@link Context#PROVIDER_URL} environment property as well as any
- * URL scheme which appears as a part of the JNDI name in the first segment.
+ * URL scheme which appears as a part of the JNDI name in the first segment.  The provider and context factories of
+ * this library are consulted before any which are discovered, and so take priority for the schemes which they support.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  * @author <a href="mailto:tadamski@redhat.com">Tomasz Adamski</a>
  */
-public final class WildFlyRootContext implements Context {
+public final class WildFlyRootContext implements EventContext {
     static {
         Version.getVersion();
     }
@@ -61,8 +69,18 @@ public final class WildFlyRootContext implements Context {
 
     private final FastHashtable<String, Object> environment;
 
-    private final ServiceLoader<NamingProviderFactory> namingProviderServiceLoader;
-    private final ServiceLoader<NamingContextFactory> namingContextServiceLoader;
+    private final NamingFactories namingFactories;
+
+    private final ConcurrentHashMap<NamingListener, List<EventContext>> listenerContexts = new ConcurrentHashMap<>();
+
+    /**
+     * The providers created for this context, which are closed along with it.  Providers created before the environment
+     * was last changed are not used again, but are kept until then, because contexts obtained from them may still be in
+     * use.
+     */
+    private final ConcurrentHashMap<ProviderKey, NamingProvider> providers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger environmentVersion = new AtomicInteger();
 
     /**
      * Construct a new instance, searching the thread context class loader for providers.  If no context class loader is
@@ -81,15 +99,12 @@ public final class WildFlyRootContext implements Context {
      * @param classLoader the class loader to search for providers
      */
     public WildFlyRootContext(final FastHashtable<String, Object> environment, final ClassLoader classLoader) {
-        this.environment = environment;
-        namingProviderServiceLoader = ServiceLoader.load(NamingProviderFactory.class, classLoader);
-        namingContextServiceLoader = ServiceLoader.load(NamingContextFactory.class, classLoader);
+        this(environment, NamingFactories.forClassLoader(classLoader));
     }
 
-    private WildFlyRootContext(final FastHashtable<String, Object> environment, final ServiceLoader<NamingProviderFactory> namingProviderServiceLoader, final ServiceLoader<NamingContextFactory> namingContextServiceLoader) {
+    private WildFlyRootContext(final FastHashtable<String, Object> environment, final NamingFactories namingFactories) {
         this.environment = environment;
-        this.namingProviderServiceLoader = namingProviderServiceLoader;
-        this.namingContextServiceLoader = namingContextServiceLoader;
+        this.namingFactories = namingFactories;
     }
 
     private static ClassLoader secureGetContextClassLoader() {
@@ -118,9 +133,9 @@ public final class WildFlyRootContext implements Context {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
         if (reparsedName.isEmpty()) {
-            return new WildFlyRootContext(environment.clone(), namingProviderServiceLoader, namingContextServiceLoader);
+            return new WildFlyRootContext(environment.clone(), namingFactories);
         }
-        return getProviderContext(reparsedName.getUrlScheme()).lookup(reparsedName.getName());
+        return invoke(NamingOperation.LOOKUP, reparsedName, null, null);
     }
 
     @Override
@@ -133,7 +148,7 @@ public final class WildFlyRootContext implements Context {
     public void bind(final Name name, final Object obj) throws NamingException {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
-        getProviderContext(reparsedName.getUrlScheme()).bind(reparsedName.getName(), obj);
+        invoke(NamingOperation.BIND, reparsedName, null, obj);
     }
 
     @Override
@@ -146,7 +161,7 @@ public final class WildFlyRootContext implements Context {
     public void rebind(final Name name, final Object obj) throws NamingException {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
-        getProviderContext(reparsedName.getUrlScheme()).rebind(reparsedName.getName(), obj);
+        invoke(NamingOperation.REBIND, reparsedName, null, obj);
     }
 
     @Override
@@ -159,7 +174,7 @@ public final class WildFlyRootContext implements Context {
     public void unbind(final Name name) throws NamingException {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
-        getProviderContext(reparsedName.getUrlScheme()).unbind(reparsedName.getName());
+        invoke(NamingOperation.UNBIND, reparsedName, null, null);
     }
 
     @Override
@@ -175,7 +190,7 @@ public final class WildFlyRootContext implements Context {
         Assert.checkNotNullParam("newName", newName);
         final ReparsedName oldReparsedName = reparse(oldName);
         final ReparsedName newReparsedName = reparse(newName);
-        getProviderContext(oldReparsedName.getUrlScheme()).rename(oldReparsedName.getName(), newReparsedName.getName());
+        invoke(NamingOperation.RENAME, oldReparsedName, newReparsedName.getName(), null);
     }
 
     @Override
@@ -188,8 +203,9 @@ public final class WildFlyRootContext implements Context {
     public NamingEnumeration<NameClassPair> list(final Name name) throws NamingException {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
-        return CloseableNamingEnumeration.fromEnumeration(getProviderContext(reparsedName.getUrlScheme()).list(
-                reparsedName.getName()));
+        @SuppressWarnings("unchecked")
+        final NamingEnumeration<NameClassPair> result = (NamingEnumeration<NameClassPair>) invoke(NamingOperation.LIST, reparsedName, null, null);
+        return result;
     }
 
     @Override
@@ -202,8 +218,112 @@ public final class WildFlyRootContext implements Context {
     public NamingEnumeration<Binding> listBindings(final Name name) throws NamingException {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
-        return CloseableNamingEnumeration.fromEnumeration(getProviderContext(reparsedName.getUrlScheme()).listBindings(
-                reparsedName.getName()));
+        @SuppressWarnings("unchecked")
+        final NamingEnumeration<Binding> result = (NamingEnumeration<Binding>) invoke(NamingOperation.LIST_BINDINGS, reparsedName, null, null);
+        return result;
+    }
+
+    /**
+     * List the entries of a context whose names match a pattern.  A provider which supports it evaluates the pattern
+     * itself, so that only the matching entries are transferred.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching entries
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> listMatching(final String name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        return listMatching(getNameParser().parse(name), pattern);
+    }
+
+    /**
+     * List the entries of a context whose names match a pattern.  A provider which supports it evaluates the pattern
+     * itself, so that only the matching entries are transferred.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching entries
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> listMatching(final Name name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        Assert.checkNotNullParam("pattern", pattern);
+        final ReparsedName reparsedName = reparse(name);
+        @SuppressWarnings("unchecked")
+        final CloseableNamingEnumeration<NameClassPair> result = (CloseableNamingEnumeration<NameClassPair>) invoke(NamingOperation.LIST_MATCHING, reparsedName, null, null, pattern, 0);
+        return result;
+    }
+
+    /**
+     * List the bindings of a context whose names match a pattern.  A provider which supports it evaluates the pattern
+     * itself, so that only the matching entries are transferred.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching bindings
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<Binding> listBindingsMatching(final String name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        return listBindingsMatching(getNameParser().parse(name), pattern);
+    }
+
+    /**
+     * List the bindings of a context whose names match a pattern.  A provider which supports it evaluates the pattern
+     * itself, so that only the matching entries are transferred.
+     *
+     * @param name the name of the context to list
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)}
+     * @return the matching bindings
+     * @throws NamingException if the context could not be listed
+     */
+    public CloseableNamingEnumeration<Binding> listBindingsMatching(final Name name, final String pattern) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        Assert.checkNotNullParam("pattern", pattern);
+        final ReparsedName reparsedName = reparse(name);
+        @SuppressWarnings("unchecked")
+        final CloseableNamingEnumeration<Binding> result = (CloseableNamingEnumeration<Binding>) invoke(NamingOperation.LIST_BINDINGS_MATCHING, reparsedName, null, null, pattern, 0);
+        return result;
+    }
+
+    /**
+     * List the entries of a subtree.  The names of the returned entries are composite names relative to the subtree's
+     * root, and each context is followed by its entries.  A provider which supports it lists the whole subtree in a
+     * single operation; otherwise each context of the subtree is listed in turn.
+     *
+     * @param name the name of the subtree's root
+     * @param maxDepth the maximum depth of the returned entries, where 1 returns only the entries of the named context,
+     *     or 0 to return all entries
+     * @return the entries of the subtree
+     * @throws NamingException if the subtree could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> walk(final String name, final int maxDepth) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        return walk(getNameParser().parse(name), maxDepth);
+    }
+
+    /**
+     * List the entries of a subtree.  The names of the returned entries are composite names relative to the subtree's
+     * root, and each context is followed by its entries.  A provider which supports it lists the whole subtree in a
+     * single operation; otherwise each context of the subtree is listed in turn.
+     *
+     * @param name the name of the subtree's root
+     * @param maxDepth the maximum depth of the returned entries, where 1 returns only the entries of the named context,
+     *     or 0 to return all entries
+     * @return the entries of the subtree
+     * @throws NamingException if the subtree could not be listed
+     */
+    public CloseableNamingEnumeration<NameClassPair> walk(final Name name, final int maxDepth) throws NamingException {
+        Assert.checkNotNullParam("name", name);
+        final ReparsedName reparsedName = reparse(name);
+        @SuppressWarnings("unchecked")
+        final CloseableNamingEnumeration<NameClassPair> result = (CloseableNamingEnumeration<NameClassPair>) invoke(NamingOperation.WALK, reparsedName, null, null, null, maxDepth);
+        return result;
     }
 
     @Override
@@ -216,7 +336,7 @@ public final class WildFlyRootContext implements Context {
     public void destroySubcontext(final Name name) throws NamingException {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
-        getProviderContext(reparsedName.getUrlScheme()).destroySubcontext(reparsedName.getName());
+        invoke(NamingOperation.DESTROY_SUBCONTEXT, reparsedName, null, null);
     }
 
     @Override
@@ -229,7 +349,7 @@ public final class WildFlyRootContext implements Context {
     public Context createSubcontext(final Name name) throws NamingException {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
-        return getProviderContext(reparsedName.getUrlScheme()).createSubcontext(reparsedName.getName());
+        return (Context) invoke(NamingOperation.CREATE_SUBCONTEXT, reparsedName, null, null);
     }
 
     @Override
@@ -243,9 +363,9 @@ public final class WildFlyRootContext implements Context {
         Assert.checkNotNullParam("name", name);
         final ReparsedName reparsedName = reparse(name);
         if (reparsedName.isEmpty()) {
-            return new WildFlyRootContext(environment.clone(), namingProviderServiceLoader, namingContextServiceLoader);
+            return new WildFlyRootContext(environment.clone(), namingFactories);
         }
-        return getProviderContext(reparsedName.getUrlScheme()).lookupLink(reparsedName.getName());
+        return invoke(NamingOperation.LOOKUP_LINK, reparsedName, null, null);
     }
 
     @Override
@@ -273,11 +393,22 @@ public final class WildFlyRootContext implements Context {
     }
 
     public Object addToEnvironment(final String propName, final Object propVal) {
-        return environment.put(propName, propVal);
+        final Object old = environment.put(propName, propVal);
+        EnvironmentUtils.environmentChanged(environment, propName);
+        if (! Objects.equals(old, propVal)) {
+            // providers are configured from the environment when they are created
+            environmentVersion.incrementAndGet();
+        }
+        return old;
     }
 
     public Object removeFromEnvironment(final String propName) {
-        return environment.remove(propName);
+        final Object old = environment.remove(propName);
+        EnvironmentUtils.environmentChanged(environment, propName);
+        if (old != null) {
+            environmentVersion.incrementAndGet();
+        }
+        return old;
     }
 
     @Override
@@ -285,7 +416,74 @@ public final class WildFlyRootContext implements Context {
         return environment;
     }
 
+    @Override
+    public void addNamingListener(final String target, final int scope, final NamingListener l) throws NamingException {
+        Assert.checkNotNullParam("target", target);
+        addNamingListener(getNameParser().parse(target), scope, l);
+    }
+
+    @Override
+    public void addNamingListener(final Name target, final int scope, final NamingListener l) throws NamingException {
+        Assert.checkNotNullParam("target", target);
+        Assert.checkNotNullParam("l", l);
+        final ReparsedName reparsedName = reparse(target);
+        final Context context = getProviderContext(reparsedName.getUrlScheme());
+        if (! (context instanceof EventContext)) {
+            NamingUtils.safeClose(context);
+            throw Messages.log.notSupported();
+        }
+        final EventContext eventContext = (EventContext) context;
+        try {
+            eventContext.addNamingListener(reparsedName.getName(), scope, l);
+        } catch (Throwable t) {
+            NamingUtils.safeClose(eventContext);
+            throw t;
+        }
+        listenerContexts.computeIfAbsent(l, ignored -> new CopyOnWriteArrayList<>()).add(eventContext);
+    }
+
+    @Override
+    public void removeNamingListener(final NamingListener l) throws NamingException {
+        Assert.checkNotNullParam("l", l);
+        final List<EventContext> contexts = listenerContexts.remove(l);
+        if (contexts != null) {
+            for (EventContext context : contexts) {
+                try {
+                    context.removeNamingListener(l);
+                } finally {
+                    NamingUtils.safeClose(context);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean targetMustExist() throws NamingException {
+        return false;
+    }
+
     public void close() throws NamingException {
+        for (NamingListener listener : listenerContexts.keySet()) {
+            removeNamingListener(listener);
+        }
+        NamingException problem = null;
+        for (ProviderKey key : providers.keySet()) {
+            final NamingProvider provider = providers.remove(key);
+            if (provider != null) {
+                try {
+                    provider.close();
+                } catch (NamingException e) {
+                    if (problem == null) {
+                        problem = e;
+                    } else {
+                        problem.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (problem != null) {
+            throw problem;
+        }
     }
 
     public String getNameInNamespace() throws NamingException {
@@ -293,9 +491,54 @@ public final class WildFlyRootContext implements Context {
         return "";
     }
 
+    private Object invoke(final NamingOperation operation, final ReparsedName reparsedName, final Name newName, final Object object) throws NamingException {
+        return invoke(operation, reparsedName, newName, object, null, 0);
+    }
+
+    private Object invoke(final NamingOperation operation, final ReparsedName reparsedName, final Name newName, final Object object, final String pattern, final int maxDepth) throws NamingException {
+        final List<NamingInterceptor> interceptors = namingFactories.getInterceptors();
+        if (interceptors.isEmpty()) {
+            return perform(operation, reparsedName.getUrlScheme(), reparsedName.getName(), newName, object, pattern, maxDepth);
+        }
+        return new NamingInvocation(this, interceptors, operation, reparsedName.getUrlScheme(), reparsedName.getName(), newName, object, pattern, maxDepth).proceed();
+    }
+
+    Object perform(final NamingOperation operation, final String urlScheme, final Name name, final Name newName, final Object object, final String pattern, final int maxDepth) throws NamingException {
+        final Context context = getProviderContext(urlScheme);
+        switch (operation) {
+            case LOOKUP: return context.lookup(name);
+            case LOOKUP_LINK: return context.lookupLink(name);
+            case BIND: context.bind(name, object); return null;
+            case REBIND: context.rebind(name, object); return null;
+            case UNBIND: context.unbind(name); return null;
+            case RENAME: context.rename(name, newName); return null;
+            case LIST: return CloseableNamingEnumeration.fromEnumeration(context.list(name));
+            case LIST_BINDINGS: return CloseableNamingEnumeration.fromEnumeration(context.listBindings(name));
+            case CREATE_SUBCONTEXT: return context.createSubcontext(name);
+            case DESTROY_SUBCONTEXT: context.destroySubcontext(name); return null;
+            case LIST_MATCHING: return context instanceof AbstractContext ? ((AbstractContext) context).listMatching(name, pattern) : NamingUtils.filterByName(context.list(name), pattern);
+            case LIST_BINDINGS_MATCHING: return context instanceof AbstractContext ? ((AbstractContext) context).listBindingsMatching(name, pattern) : NamingUtils.filterByName(context.listBindings(name), pattern);
+            case WALK: return context instanceof AbstractContext ? ((AbstractContext) context).walk(name, maxDepth) : NamingUtils.walk(context, name, maxDepth);
+            default: throw Assert.impossibleSwitchCase(operation);
+        }
+    }
+
     private Context getProviderContext(final String nameScheme) throws NamingException {
+        final Object providerUrls = getEnvironment().get(ScatterGatherContextFactory.PROVIDER_URLS);
+        if (providerUrls != null && (nameScheme == null || nameScheme.isEmpty())) {
+            // names without a scheme are resolved on every listed provider at once
+            final String[] urls = providerUrls.toString().split(",");
+            final List<Context> contexts = new ArrayList<>(urls.length);
+            for (String url : urls) {
+                contexts.add(getProviderContext(nameScheme, url.trim()));
+            }
+            return new ScatterGatherContext(new FastHashtable<>(getEnvironment()), contexts, ScatterGatherContextFactory.getPolicy(getEnvironment()), null);
+        }
+        return getProviderContext(nameScheme, getEnvironment().get(PROVIDER_URL));
+    }
+
+    private Context getProviderContext(final String nameScheme, final Object urlString) throws NamingException {
         // get provider scheme
-        final Object urlString = getEnvironment().get(PROVIDER_URL);
         URI providerUri;
         try {
             providerUri = urlString == null ? null : new URI(urlString.toString());
@@ -304,35 +547,52 @@ public final class WildFlyRootContext implements Context {
         }
         final String providerScheme = providerUri == null ? null : providerUri.getScheme();
         // check for empty
-        if (nameScheme.isEmpty() && (providerScheme == null || providerScheme.isEmpty())) {
+        if ((nameScheme == null || nameScheme.isEmpty()) && (providerScheme == null || providerScheme.isEmpty())) {
             return NamingUtils.emptyContext(getEnvironment());
         }
-        // get active naming providers
-        final ServiceLoader<NamingProviderFactory> providerLoader = this.namingProviderServiceLoader;
-        final ServiceLoader<NamingContextFactory> contextLoader = this.namingContextServiceLoader;
-        synchronized (providerLoader) {
-            final Iterator<NamingProviderFactory> providerIterator = providerLoader.iterator();
-            for (;;) try {
-                if (! providerIterator.hasNext()) break;
-                final NamingProviderFactory providerFactory = providerIterator.next();
-                if (providerFactory.supportsUriScheme(providerScheme)) {
-                    final NamingProvider provider = providerFactory.createProvider(providerUri, getEnvironment());
-                    final Iterator<NamingContextFactory> contextIterator = contextLoader.iterator();
-                    for (;;) try {
-                        if (! contextIterator.hasNext()) break;
-                        final NamingContextFactory contextFactory = contextIterator.next();
-                        if (contextFactory.supportsUriScheme(provider, nameScheme)) {
-                            return contextFactory.createRootContext(provider, nameScheme, getEnvironment());
-                        }
-                    } catch (ServiceConfigurationError error) {
-                        Messages.log.serviceConfigFailed(error);
+        // the indexed factories are tried first, so that service discovery is only needed for other providers
+        Context context = getProviderContext(FactoryIndex.PROVIDER_FACTORIES, providerUri, providerScheme, nameScheme);
+        if (context == null) {
+            // the discovered factories are loaded once, and no lock is held while creating them
+            context = getProviderContext(namingFactories.getProviderFactories(), providerUri, providerScheme, nameScheme);
+            if (context == null) {
+                throw Messages.log.noProviderForUri(nameScheme);
+            }
+        }
+        return context;
+    }
+
+    private Context getProviderContext(final List<NamingProviderFactory> providerFactories, final URI providerUri, final String providerScheme, final String nameScheme) throws NamingException {
+        for (NamingProviderFactory providerFactory : providerFactories) {
+            if (providerFactory.supportsUriScheme(providerScheme)) {
+                final NamingProvider provider = getProvider(providerFactory, providerUri);
+                for (NamingContextFactory contextFactory : FactoryIndex.CONTEXT_FACTORIES) {
+                    if (contextFactory.supportsUriScheme(provider, nameScheme)) {
+                        return contextFactory.createRootContext(provider, nameScheme, getEnvironment());
                     }
                 }
-            } catch (ServiceConfigurationError error) {
-                Messages.log.serviceConfigFailed(error);
+                for (NamingContextFactory contextFactory : namingFactories.getContextFactories()) {
+                    if (contextFactory.supportsUriScheme(provider, nameScheme)) {
+                        return contextFactory.createRootContext(provider, nameScheme, getEnvironment());
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private NamingProvider getProvider(final NamingProviderFactory providerFactory, final URI providerUri) throws NamingException {
+        final ProviderKey key = new ProviderKey(providerFactory, providerUri, environmentVersion.get());
+        NamingProvider provider = providers.get(key);
+        if (provider == null) {
+            provider = providerFactory.createProvider(providerUri, getEnvironment());
+            final NamingProvider appearing = providers.putIfAbsent(key, provider);
+            if (appearing != null) {
+                provider.close();
+                provider = appearing;
             }
-            throw Messages.log.noProviderForUri(nameScheme);
         }
+        return provider;
     }
 
     ReparsedName reparse(final Name origName) throws InvalidNameException {
@@ -378,4 +638,24 @@ public final class WildFlyRootContext implements Context {
             return urlScheme == null && name.isEmpty();
         }
     }
+
+    static final class ProviderKey {
+        private final NamingProviderFactory providerFactory;
+        private final URI providerUri;
+        private final int environmentVersion;
+
+        ProviderKey(final NamingProviderFactory providerFactory, final URI providerUri, final int environmentVersion) {
+            this.providerFactory = providerFactory;
+            this.providerUri = providerUri;
+            this.environmentVersion = environmentVersion;
+        }
+
+        public boolean equals(final Object o) {
+            return this == o || o instanceof ProviderKey && providerFactory == ((ProviderKey) o).providerFactory && Objects.equals(providerUri, ((ProviderKey) o).providerUri) && environmentVersion == ((ProviderKey) o).environmentVersion;
+        }
+
+        public int hashCode() {
+            return (System.identityHashCode(providerFactory) * 31 + Objects.hashCode(providerUri)) * 31 + environmentVersion;
+        }
+    }
 }
@@ -23,6 +23,7 @@
 package org.wildfly.naming.client._private;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ServiceConfigurationError;
 
 import javax.naming.CommunicationException;
@@ -36,6 +37,8 @@ import javax.naming.NamingException;
 import javax.naming.NoPermissionException;
 import javax.naming.NotContextException;
 import javax.naming.OperationNotSupportedException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.event.NamingListener;
 
 import org.jboss.logging.BasicLogger;
 import org.jboss.logging.Logger;
@@ -147,4 +150,31 @@ public interface Messages extends BasicLogger {
 
     @Message(id = 28, value = "Naming provider instance close failed")
     CommunicationException namingProviderCloseFailed(@Cause Throwable cause);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 29, value = "Naming listener \"%s\" failed to handle an event")
+    void listenerFailed(NamingListener listener, @Cause Throwable cause);
+
+    @Message(id = 30, value = "Naming provider is unavailable after repeated communication failures")
+    CommunicationException providerUnavailable();
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 31, value = "Ignoring invalid naming snapshot file \"%s\"")
+    void invalidSnapshot(Path path, @Cause Throwable cause);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 32, value = "Failed to write naming snapshot file \"%s\"")
+    void snapshotWriteFailed(Path path, @Cause Throwable cause);
+
+    @Message(id = 33, value = "Too many outstanding invocations on the naming channel")
+    ServiceUnavailableException tooManyInvocations();
+
+    @Message(id = 34, value = "Federated naming operation failed")
+    NamingException federatedOperationFailed(@Cause Throwable cause);
+
+    @Message(id = 35, value = "Invalid scatter-gather policy \"%s\"")
+    ConfigurationException invalidScatterGatherPolicy(Object policy);
+
+    @Message(id = 36, value = "Naming operation timed out")
+    CommunicationException invocationTimedOut();
 }
@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.marshalling.ContextClassResolver;
+
+/**
+ * A context class resolver which caches the classes it resolves.  Resolved classes are kept for each class loader,
+ * held weakly, by class name; the class loader of the most recent resolution is remembered so that the usual case of
+ * many unmarshalling operations from the same deployment resolves classes without taking any lock or delegating to the
+ * class loader.  Each class loader's cache holds at most {@link #MAX_CLASSES} entries, and is discarded when it fills.
+ * Failed resolutions are not cached, because the class may become visible later.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class CachingClassResolver extends ContextClassResolver {
+    static final int MAX_CLASSES = 256;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final WeakHashMap<ClassLoader, LoaderCache> caches = new WeakHashMap<>();
+    private volatile LoaderCache last;
+
+    CachingClassResolver() {
+    }
+
+    protected Class<?> loadClass(final String name) throws ClassNotFoundException {
+        final ClassLoader classLoader = getClassLoader();
+        if (classLoader == null) {
+            return super.loadClass(name);
+        }
+        final LoaderCache cache = getCache(classLoader);
+        final WeakReference<Class<?>> ref = cache.classes.get(name);
+        Class<?> clazz = ref == null ? null : ref.get();
+        if (clazz == null) {
+            clazz = super.loadClass(name);
+            if (cache.classes.size() >= MAX_CLASSES) {
+                cache.classes.clear();
+            }
+            // the class must not be held strongly, or it would keep its class loader reachable
+            cache.classes.put(name, new WeakReference<>(clazz));
+        }
+        return clazz;
+    }
+
+    private LoaderCache getCache(final ClassLoader classLoader) {
+        LoaderCache cache = last;
+        if (cache != null && cache.classLoader.get() == classLoader) {
+            return cache;
+        }
+        lock.lock();
+        try {
+            cache = caches.get(classLoader);
+            if (cache == null) {
+                caches.put(classLoader, cache = new LoaderCache(classLoader));
+            }
+            last = cache;
+            return cache;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static final class LoaderCache {
+        final WeakReference<ClassLoader> classLoader;
+        final Map<String, WeakReference<Class<?>>> classes = new ConcurrentHashMap<>();
+
+        LoaderCache(final ClassLoader classLoader) {
+            this.classLoader = new WeakReference<>(classLoader);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.CommunicationException;
+
+import org.wildfly.naming.client._private.Messages;
+
+/**
+ * A circuit breaker for the operations of a single naming provider.  The breaker is normally closed; after a number of
+ * consecutive communication failures it opens, and all operations fail immediately without contacting the server.
+ * Once the open time has elapsed, the breaker becomes half-open and lets exactly one trial operation through: if that
+ * operation reaches the server the breaker closes, otherwise it opens again.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class CircuitBreaker {
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long openedAt;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param failureThreshold the number of consecutive failures which opens the breaker, or 0 to disable the breaker
+     * @param openTime the time that the breaker remains open before a trial operation is allowed
+     * @param unit the open time unit
+     */
+    CircuitBreaker(final int failureThreshold, final long openTime, final TimeUnit unit) {
+        this.failureThreshold = failureThreshold;
+        openNanos = unit.toNanos(openTime);
+    }
+
+    /**
+     * Acquire permission to perform an operation.  Each successful call must be followed by exactly one call to
+     * {@link #succeeded()}, {@link #failed()}, or {@link #released()}.
+     *
+     * @throws CommunicationException if the breaker is open
+     */
+    void acquire() throws CommunicationException {
+        final int state = this.state.get();
+        if (state == CLOSED) {
+            return;
+        }
+        if (state == OPEN && System.nanoTime() - openedAt >= openNanos && this.state.compareAndSet(OPEN, HALF_OPEN)) {
+            // this caller performs the trial operation
+            return;
+        }
+        throw Messages.log.providerUnavailable();
+    }
+
+    /**
+     * Record that an operation reached the server.
+     */
+    void succeeded() {
+        if (failureThreshold > 0) {
+            failures.set(0);
+            if (state.get() != CLOSED) {
+                state.set(CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Record that an operation failed to communicate with the server.
+     */
+    void failed() {
+        if (failureThreshold > 0) {
+            if (state.get() == HALF_OPEN) {
+                openedAt = System.nanoTime();
+                state.set(OPEN);
+            } else if (failures.incrementAndGet() >= failureThreshold) {
+                openedAt = System.nanoTime();
+                state.compareAndSet(CLOSED, OPEN);
+            }
+        }
+    }
+
+    /**
+     * Record that an operation ended without establishing whether the server is reachable, for example because it was
+     * interrupted.  A trial operation is then permitted again at once.
+     */
+    void released() {
+        state.compareAndSet(HALF_OPEN, OPEN);
+    }
+
+    boolean isOpen() {
+        return state.get() != CLOSED;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.remoting3.ChannelClosedException;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.util.Invocation;
+
+/**
+ * An invocation whose caller blocks until a response arrives.  Unlike the Remoting {@code BlockingInvocation}, waiting
+ * is done using a {@link ReentrantLock} rather than an object monitor, so that a virtual thread which is waiting for
+ * a response releases its carrier thread.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ClientInvocation extends Invocation {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition responded = lock.newCondition();
+    private final ArrayDeque<Response> responses = new ArrayDeque<>(1);
+    private boolean cancelled;
+    private Runnable listener;
+    private Runnable completion;
+
+    ClientInvocation(final int index) {
+        super(index);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param index the invocation index
+     * @param completion the task to run once no further response can arrive, before the final response is made
+     *     available; it must not block
+     */
+    ClientInvocation(final int index, final Runnable completion) {
+        super(index);
+        this.completion = completion;
+    }
+
+    public void handleResponse(final int parameter, final MessageInputStream inputStream) {
+        final Runnable listener;
+        lock.lock();
+        try {
+            // complete before the response is visible, so that a caller which receives it can invoke again at once
+            runCompletion(takeCompletion(parameter != Protocol.PARTIAL));
+            if (cancelled) {
+                safeClose(inputStream);
+                return;
+            }
+            responses.add(new Response(inputStream, parameter));
+            responded.signal();
+            listener = this.listener;
+            this.listener = null;
+        } finally {
+            lock.unlock();
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    public void handleClosed() {
+        final Runnable listener;
+        lock.lock();
+        try {
+            runCompletion(takeCompletion(true));
+            responses.add(new Response(null, 0));
+            responded.signal();
+            listener = this.listener;
+            this.listener = null;
+        } finally {
+            lock.unlock();
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private Runnable takeCompletion(final boolean complete) {
+        assert lock.isHeldByCurrentThread();
+        final Runnable completion = complete ? this.completion : null;
+        if (complete) {
+            this.completion = null;
+        }
+        return completion;
+    }
+
+    private static void runCompletion(final Runnable completion) {
+        if (completion != null) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Run a task once a response to this invocation is available.  If one is already available, the task is run
+     * immediately by the calling thread; otherwise it is run by the thread which receives the response.  The task is
+     * not run if the invocation is cancelled first.
+     *
+     * @param listener the task to run (not {@code null})
+     */
+    void whenResponded(final Runnable listener) {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return;
+            }
+            if (responses.isEmpty()) {
+                this.listener = listener;
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        listener.run();
+    }
+
+    /**
+     * Determine whether a response to this invocation is available.
+     *
+     * @return {@code true} if a response is available, {@code false} otherwise
+     */
+    boolean hasResponse() {
+        lock.lock();
+        try {
+            return ! responses.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Determine whether a response to this invocation is available and reports success.
+     *
+     * @return {@code true} if the next response is a successful one, {@code false} otherwise
+     */
+    boolean hasSuccessfulResponse() {
+        lock.lock();
+        try {
+            final Response response = responses.peek();
+            return response != null && response.parameter == Protocol.SUCCESS;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the next response to this invocation.
+     *
+     * @return the response (not {@code null})
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    Response getResponse() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Response response;
+            while ((response = responses.poll()) == null) {
+                if (cancelled) {
+                    throw new IllegalStateException();
+                }
+                responded.await();
+            }
+            return response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancel this invocation, discarding any responses which have arrived or which arrive later.  Cancellation is local
+     * only: the protocol has no cancel request, so the server still performs the operation and sends its response.
+     */
+    void cancel() {
+        lock.lock();
+        try {
+            if (! cancelled) {
+                cancelled = true;
+                listener = null;
+                Response response;
+                while ((response = responses.poll()) != null) {
+                    safeClose(response.inputStream);
+                }
+                responded.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static final class Response implements AutoCloseable {
+        private final MessageInputStream inputStream;
+        private final int parameter;
+
+        Response(final MessageInputStream inputStream, final int parameter) {
+            this.inputStream = inputStream;
+            this.parameter = parameter;
+        }
+
+        MessageInputStream getInputStream() throws IOException {
+            final MessageInputStream inputStream = this.inputStream;
+            if (inputStream == null) {
+                throw new ChannelClosedException("Channel was closed");
+            }
+            return inputStream;
+        }
+
+        int getParameter() {
+            return parameter;
+        }
+
+        public void close() {
+            safeClose(inputStream);
+        }
+    }
+}
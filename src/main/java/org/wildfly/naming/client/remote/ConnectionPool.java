@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.wildfly.naming.client.remote;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.wildfly.security.auth.client.AuthenticationConfiguration;
+import org.wildfly.security.auth.client.AuthenticationContext;
+import org.wildfly.security.auth.client.AuthenticationContextConfigurationClient;
+import org.xnio.IoFuture;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+
+/**
+ * A pool of authenticated connections of an endpoint, keyed by destination and by the authentication configuration
+ * which the captured authentication context selects for the destination.  Callers whose contexts select the same
+ * configuration share connections, up to a maximum number of connections per key, beyond which connections are
+ * shared by several leases.  Connections without leases are closed once they have been idle for their idle timeout.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ConnectionPool {
+    private static final AuthenticationContextConfigurationClient CLIENT = AccessController.doPrivileged(AuthenticationContextConfigurationClient.ACTION);
+
+    private final Endpoint endpoint;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final HashMap<Key, ArrayList<PooledConnection>> pools = new HashMap<>();
+    private ScheduledFuture<?> sweeper;
+
+    ConnectionPool(final Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Acquire a lease on a pooled connection.
+     *
+     * @param providerUri the destination URI
+     * @param context the authentication context to connect with
+     * @param maxPerKey the maximum number of connections for the destination and identity
+     * @param idleTimeoutMillis the time after which an unleased connection is closed
+     * @return the lease (not {@code null})
+     * @throws IOException if the connection could not be established
+     */
+    Lease acquire(final URI providerUri, final AuthenticationContext context, final int maxPerKey, final long idleTimeoutMillis) throws IOException {
+        final AuthenticationConfiguration configuration = CLIENT.getAuthenticationConfiguration(providerUri, context);
+        final Key key = new Key(new RemoteNamingProviderFactory.URIKey(providerUri.getScheme(), providerUri.getUserInfo(), providerUri.getHost(), providerUri.getPort()), configuration);
+        final PooledConnection pooled;
+        boolean created = false;
+        lock.lock();
+        try {
+            final ArrayList<PooledConnection> list = pools.computeIfAbsent(key, ignored -> new ArrayList<>());
+            PooledConnection best = null;
+            for (PooledConnection candidate : list) {
+                if (best == null || candidate.leases < best.leases) {
+                    best = candidate;
+                }
+            }
+            if (best == null || best.leases > 0 && list.size() < Math.max(1, maxPerKey)) {
+                best = new PooledConnection(key, endpoint.connect(providerUri, OptionMap.EMPTY, context));
+                list.add(best);
+                created = true;
+            }
+            best.leases ++;
+            best.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+            pooled = best;
+        } finally {
+            lock.unlock();
+        }
+        final Connection connection;
+        try {
+            connection = Futures.get(pooled.future);
+        } catch (IOException e) {
+            discard(pooled);
+            throw e;
+        }
+        if (created) {
+            connection.addCloseHandler((closed, ignored) -> discard(pooled));
+        }
+        return new Lease(pooled, connection);
+    }
+
+    void release(final PooledConnection pooled) {
+        lock.lock();
+        try {
+            if (-- pooled.leases == 0) {
+                pooled.idleSince = System.nanoTime();
+                if (sweeper == null) {
+                    sweeper = SchedulerHolder.SCHEDULER.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discard(final PooledConnection pooled) {
+        lock.lock();
+        try {
+            final ArrayList<PooledConnection> list = pools.get(pooled.key);
+            if (list != null && list.remove(pooled) && list.isEmpty()) {
+                pools.remove(pooled.key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void sweep() {
+        final ArrayList<PooledConnection> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            final long now = System.nanoTime();
+            final Iterator<ArrayList<PooledConnection>> iterator = pools.values().iterator();
+            while (iterator.hasNext()) {
+                final ArrayList<PooledConnection> list = iterator.next();
+                list.removeIf(pooled -> {
+                    if (pooled.leases == 0 && now - pooled.idleSince >= pooled.idleTimeoutNanos) {
+                        expired.add(pooled);
+                        return true;
+                    }
+                    return false;
+                });
+                if (list.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+            if (pools.isEmpty() && sweeper != null) {
+                sweeper.cancel(false);
+                sweeper = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : expired) {
+            try {
+                IoUtils.safeClose(pooled.future.get());
+            } catch (IOException ignored) {
+                // already discarded
+            }
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            int size = 0;
+            for (ArrayList<PooledConnection> list : pools.values()) {
+                size += list.size();
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static final class Key {
+        private final RemoteNamingProviderFactory.URIKey uriKey;
+        private final AuthenticationConfiguration configuration;
+
+        Key(final RemoteNamingProviderFactory.URIKey uriKey, final AuthenticationConfiguration configuration) {
+            this.uriKey = uriKey;
+            this.configuration = configuration;
+        }
+
+        public boolean equals(final Object o) {
+            return this == o || o instanceof Key && uriKey.equals(((Key) o).uriKey) && configuration == ((Key) o).configuration;
+        }
+
+        public int hashCode() {
+            return uriKey.hashCode() * 31 + System.identityHashCode(configuration);
+        }
+    }
+
+    static final class PooledConnection {
+        final Key key;
+        final IoFuture<Connection> future;
+        // protected by the pool lock
+        int leases;
+        long idleSince;
+        long idleTimeoutNanos;
+
+        PooledConnection(final Key key, final IoFuture<Connection> future) {
+            this.key = key;
+            this.future = future;
+        }
+    }
+
+    final class Lease implements RemoteNamingProvider.HeldConnection {
+        private final PooledConnection pooled;
+        private final Connection connection;
+
+        Lease(final PooledConnection pooled, final Connection connection) {
+            this.pooled = pooled;
+            this.connection = connection;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public void release() {
+            ConnectionPool.this.release(pooled);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CountDownLatch;
+
+import org.xnio.IoFuture;
+
+/**
+ * Utilities for waiting on {@link IoFuture} instances.  The XNIO futures wait on an object monitor, which pins the
+ * carrier thread of a virtual thread for the whole wait; when the calling thread is detected to be virtual, these
+ * methods instead wait on a latch which is released by a notifier, and only retrieve the result once it is available.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class Futures {
+    private static final MethodHandle IS_VIRTUAL;
+
+    static {
+        MethodHandle isVirtual;
+        try {
+            isVirtual = MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // virtual threads are not supported on this platform
+            isVirtual = null;
+        }
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private Futures() {
+    }
+
+    /**
+     * Determine whether the given thread is a virtual thread.
+     *
+     * @param thread the thread to test
+     * @return {@code true} if the thread is virtual, {@code false} otherwise
+     */
+    static boolean isVirtual(Thread thread) {
+        final MethodHandle isVirtual = IS_VIRTUAL;
+        if (isVirtual == null) {
+            return false;
+        }
+        try {
+            return (boolean) isVirtual.invokeExact(thread);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Get the result of the future, waiting uninterruptibly if needed.
+     *
+     * @param future the future
+     * @param <T> the result type
+     * @return the result
+     * @throws IOException if the operation failed
+     */
+    static <T> T get(IoFuture<T> future) throws IOException {
+        if (future.getStatus() == IoFuture.Status.WAITING && isVirtual(Thread.currentThread())) {
+            final CountDownLatch latch = awaitLatch(future);
+            boolean intr = false;
+            try {
+                for (;;) try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    intr = true;
+                }
+            } finally {
+                if (intr) Thread.currentThread().interrupt();
+            }
+        }
+        return future.get();
+    }
+
+    /**
+     * Get the result of the future, waiting interruptibly if needed.
+     *
+     * @param future the future
+     * @param <T> the result type
+     * @return the result
+     * @throws IOException if the operation failed
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    static <T> T getInterruptibly(IoFuture<T> future) throws IOException, InterruptedException {
+        if (future.getStatus() == IoFuture.Status.WAITING && isVirtual(Thread.currentThread())) {
+            awaitLatch(future).await();
+        }
+        return future.getInterruptibly();
+    }
+
+    private static CountDownLatch awaitLatch(IoFuture<?> future) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        future.addNotifier((ioFuture, attachment) -> attachment.countDown(), latch);
+        return latch;
+    }
+}
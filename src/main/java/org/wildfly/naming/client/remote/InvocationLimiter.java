@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.wildfly.naming.client.remote;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.naming.NamingException;
+
+import org.wildfly.naming.client._private.Messages;
+
+/**
+ * A limit on the number of outstanding invocations of a channel.  Callers which exceed the limit wait in arrival order
+ * for an invocation to complete, for as long as they choose, and the time spent waiting is recorded.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class InvocationLimiter {
+    private final int limit;
+    private final Semaphore permits;
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder totalQueueTime = new LongAdder();
+    private final AtomicLong maxQueueTime = new AtomicLong();
+
+    InvocationLimiter(final int limit) {
+        this.limit = limit;
+        permits = new Semaphore(limit, true);
+    }
+
+    /**
+     * Acquire a permit for an invocation.
+     *
+     * @param timeoutNanos the time to wait for a permit, {@code 0} to fail if none is available, or a negative number
+     *     to wait without limit
+     * @throws NamingException if no permit was acquired in time, or if the calling thread was interrupted
+     */
+    void acquire(final long timeoutNanos) throws NamingException {
+        try {
+            // unlike tryAcquire(), this honors the fairness setting
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                acquiredCount.increment();
+                return;
+            }
+            if (timeoutNanos == 0) {
+                rejectedCount.increment();
+                throw Messages.log.tooManyInvocations();
+            }
+            final long start = System.nanoTime();
+            final boolean acquired;
+            if (timeoutNanos < 0) {
+                permits.acquire();
+                acquired = true;
+            } else {
+                acquired = permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            final long queueTime = System.nanoTime() - start;
+            queuedCount.increment();
+            totalQueueTime.add(queueTime);
+            maxQueueTime.accumulateAndGet(queueTime, Math::max);
+            if (! acquired) {
+                rejectedCount.increment();
+                throw Messages.log.tooManyInvocations();
+            }
+            acquiredCount.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Messages.log.operationInterrupted();
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getOutstandingCount() {
+        return limit - permits.availablePermits();
+    }
+
+    int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    /**
+     * Get the number of callers which had to wait for a permit, whether or not they acquired it.
+     */
+    long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    long getTotalQueueTime(TimeUnit unit) {
+        return unit.convert(totalQueueTime.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    long getMaxQueueTime(TimeUnit unit) {
+        return unit.convert(maxQueueTime.get(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A window of the most recent operation latencies, used to derive a percentile-based delay.  Recording is lock-free;
+ * percentiles are recomputed from a copy of the window at most once every {@link #RECOMPUTE_INTERVAL} recordings.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class LatencyWindow {
+    static final int SIZE = 256;
+    static final int RECOMPUTE_INTERVAL = 32;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+    // a long, so that the count does not wrap to negative in a long-lived client
+    private final AtomicLong count = new AtomicLong();
+    private volatile long[] sorted;
+    private volatile long sortedAt;
+
+    LatencyWindow() {
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(final long nanos) {
+        final long idx = count.getAndIncrement();
+        samples.set((int) (idx & SIZE - 1), nanos);
+    }
+
+    /**
+     * Get the latency at the given percentile of the window.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @param defaultNanos the value to return while too few latencies have been recorded
+     * @return the latency in nanoseconds
+     */
+    long getPercentile(final int percentile, final long defaultNanos) {
+        final long count = this.count.get();
+        if (count < RECOMPUTE_INTERVAL) {
+            return defaultNanos;
+        }
+        long[] sorted = this.sorted;
+        if (sorted == null || count - sortedAt >= RECOMPUTE_INTERVAL) {
+            // racing threads may each recompute; the result is equivalent
+            sorted = new long[(int) Math.min(count, SIZE)];
+            for (int i = 0; i < sorted.length; i ++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            this.sorted = sorted;
+            sortedAt = count;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * percentile / 100))];
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.naming.NamingException;
+
+import org.jboss.marshalling.MarshallingConfiguration;
+
+/**
+ * A looked up object which has not yet been unmarshalled.  Lookups return instances of this class in place of the bound
+ * object when the {@link RemoteNamingProviderFactory#LAZY_LOOKUP} environment property is set; the raw object data is
+ * retained, and is unmarshalled using the context class loader which was current at the time of the lookup on the
+ * first call to {@link #get()}.  Objects which are looked up but never used thus never have their classes loaded.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class LazyObject {
+    private final MarshallingConfiguration configuration;
+    private final ClassLoader classLoader;
+    private final ReentrantLock lock = new ReentrantLock();
+    private byte[] bytes;
+    private Object value;
+    private volatile boolean resolved;
+
+    LazyObject(final MarshallingConfiguration configuration, final byte[] bytes, final ClassLoader classLoader) {
+        this.configuration = configuration;
+        this.bytes = bytes;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Get the looked up object, unmarshalling it if this has not yet been done.
+     *
+     * @return the looked up object
+     * @throws NamingException if unmarshalling the object failed
+     */
+    public Object get() throws NamingException {
+        if (resolved) {
+            return value;
+        }
+        lock.lock();
+        try {
+            if (! resolved) {
+                value = RemoteClientTransport.unmarshal(configuration, bytes, classLoader);
+                // the raw data is no longer needed
+                bytes = null;
+                resolved = true;
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Determine whether the object has been unmarshalled.
+     *
+     * @return {@code true} if the object has been unmarshalled, {@code false} otherwise
+     */
+    public boolean isResolved() {
+        return resolved;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.wildfly.naming.client.remote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.Binding;
+import javax.naming.NamingException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+import javax.naming.event.NamingListener;
+import javax.naming.event.ObjectChangeListener;
+
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.util.Invocation;
+import org.wildfly.naming.client._private.Messages;
+import org.wildfly.naming.client.store.ListenerHandle;
+
+/**
+ * A long-lived invocation which represents a naming listener registration on the remote server.  The server pushes
+ * batches of events as {@linkplain Protocol#PARTIAL partial} responses to the registration, which are delivered to the
+ * listener in order on the given executor.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ListenerInvocation extends Invocation implements ListenerHandle {
+    private static final int ST_REGISTERING = 0;
+    private static final int ST_OPEN = 1;
+    private static final int ST_CLOSED = 2;
+
+    private final RemoteClientTransport transport;
+    private final EventContext source;
+    private final NamingListener listener;
+    private final Executor executor;
+    private final AtomicInteger state = new AtomicInteger(ST_REGISTERING);
+    private final CountDownLatch registered = new CountDownLatch(1);
+    private final ConcurrentLinkedQueue<List<EventObject>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private volatile NamingException problem;
+
+    ListenerInvocation(final int index, final RemoteClientTransport transport, final EventContext source, final NamingListener listener, final Executor executor) {
+        super(index);
+        this.transport = transport;
+        this.source = source;
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the event types that the given listener is able to receive, as a bit mask of {@code 1 << type}.
+     *
+     * @param listener the listener
+     * @return the interest mask
+     */
+    static int interestMask(NamingListener listener) {
+        int mask = 0;
+        if (listener instanceof NamespaceChangeListener) {
+            mask |= 1 << NamingEvent.OBJECT_ADDED | 1 << NamingEvent.OBJECT_REMOVED | 1 << NamingEvent.OBJECT_RENAMED;
+        }
+        if (listener instanceof ObjectChangeListener) {
+            mask |= 1 << NamingEvent.OBJECT_CHANGED;
+        }
+        return mask;
+    }
+
+    void awaitRegistration() throws InterruptedException, NamingException {
+        registered.await();
+        final NamingException problem = this.problem;
+        if (problem != null) {
+            throw problem;
+        }
+    }
+
+    public void handleResponse(final int parameter, final MessageInputStream inputStream) {
+        try (MessageInputStream is = inputStream) {
+            if (parameter == Protocol.PARTIAL) {
+                final int type = is.readUnsignedByte();
+                if (type == Protocol.P_VOID) {
+                    // registration acknowledged
+                    state.compareAndSet(ST_REGISTERING, ST_OPEN);
+                    registered.countDown();
+                } else if (type == Protocol.P_EVENT) {
+                    final List<EventObject> events = readEvents(is);
+                    if (! events.isEmpty() && state.get() == ST_OPEN) {
+                        enqueue(events);
+                    }
+                } else {
+                    fail(Messages.log.invalidResponse());
+                }
+            } else if (parameter == Protocol.FAILURE) {
+                fail(transport.readException(is));
+            } else {
+                // the server has acknowledged the removal of this listener
+                state.set(ST_CLOSED);
+                registered.countDown();
+            }
+        } catch (IOException e) {
+            fail(Messages.log.operationFailed(e));
+        }
+    }
+
+    public void handleClosed() {
+        fail(Messages.log.connectionEnded());
+    }
+
+    public boolean isOpen() {
+        return state.get() != ST_CLOSED;
+    }
+
+    public void close() {
+        final int oldState = state.getAndSet(ST_CLOSED);
+        if (oldState != ST_CLOSED) {
+            registered.countDown();
+            transport.removeListener(this);
+        }
+    }
+
+    private void fail(final NamingException exception) {
+        final int oldState = state.getAndSet(ST_CLOSED);
+        if (oldState == ST_REGISTERING) {
+            problem = exception;
+            registered.countDown();
+        } else if (oldState == ST_OPEN) {
+            enqueue(Collections.singletonList(new NamingExceptionEvent(source, exception)));
+        }
+    }
+
+    private List<EventObject> readEvents(final MessageInputStream is) throws IOException {
+        final int count = is.readInt();
+        final List<EventObject> events = new ArrayList<>(count);
+        final int mask = interestMask(listener);
+        for (int i = 0; i < count; i ++) {
+            final int type = is.readUnsignedByte();
+            final Binding newBinding = readBinding(is);
+            final Binding oldBinding = readBinding(is);
+            if ((mask & 1 << type) != 0) {
+                events.add(new NamingEvent(source, type, newBinding, oldBinding, null));
+            }
+        }
+        return events;
+    }
+
+    private static Binding readBinding(final MessageInputStream is) throws IOException {
+        if (! is.readBoolean()) {
+            return null;
+        }
+        final String name = is.readUTF();
+        final String className = is.readUTF();
+        return new Binding(name, className.isEmpty() ? null : className, null, true);
+    }
+
+    private void enqueue(final List<EventObject> events) {
+        pending.add(events);
+        if (delivering.compareAndSet(false, true)) {
+            executor.execute(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        for (;;) {
+            List<EventObject> batch;
+            while ((batch = pending.poll()) != null) {
+                for (EventObject event : batch) {
+                    try {
+                        if (event instanceof NamingEvent) {
+                            ((NamingEvent) event).dispatch(listener);
+                        } else {
+                            ((NamingExceptionEvent) event).dispatch(listener);
+                        }
+                    } catch (Throwable t) {
+                        Messages.log.listenerFailed(listener, t);
+                    }
+                }
+            }
+            delivering.set(false);
+            // recheck in case a batch arrived after the last poll
+            if (pending.isEmpty() || ! delivering.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.wildfly.naming.client.remote;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gathers the lookups of concurrent callers into batches which are sent as one message.  The first caller to add a
+ * lookup to an empty batch waits for the batch window to pass, or for the batch to fill, and sends the batch; the
+ * callers whose lookups join the batch do not wait.  Every lookup keeps its own invocation, so responses reach their
+ * callers as usual.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class LookupBatcher {
+    private final Sender sender;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private Batch current;
+
+    LookupBatcher(final Sender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Add a lookup to the current batch, sending the batch if the calling thread is the one to do so.
+     *
+     * @param lookup the lookup
+     * @param windowNanos the time to wait for further lookups after the first lookup of a batch
+     * @param maxSize the number of lookups at which a batch is sent immediately
+     */
+    void add(final Lookup lookup, final long windowNanos, final int maxSize) {
+        final Batch batch;
+        boolean leader = false;
+        lock.lock();
+        try {
+            Batch current = this.current;
+            if (current == null) {
+                this.current = current = new Batch();
+                leader = true;
+            }
+            current.lookups.add(lookup);
+            batch = current;
+            if (batch.lookups.size() >= maxSize) {
+                // full; send it now, and release the leader
+                this.current = null;
+                batch.taken = true;
+                changed.signalAll();
+            } else if (leader) {
+                boolean intr = false;
+                long remaining = windowNanos;
+                while (! batch.taken && remaining > 0) {
+                    try {
+                        remaining = changed.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        // send the batch anyway; the caller sees the interruption while waiting for the response
+                        intr = true;
+                        break;
+                    }
+                }
+                if (intr) {
+                    Thread.currentThread().interrupt();
+                }
+                if (batch.taken) {
+                    // sent by the thread that filled it
+                    return;
+                }
+                this.current = null;
+                batch.taken = true;
+            } else {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        sender.send(batch.lookups);
+    }
+
+    static final class Batch {
+        final ArrayList<Lookup> lookups = new ArrayList<>();
+        boolean taken;
+    }
+
+    static final class Lookup {
+        final ClientInvocation invocation;
+        final String name;
+        final boolean preserveLinks;
+
+        Lookup(final ClientInvocation invocation, final String name, final boolean preserveLinks) {
+            this.invocation = invocation;
+            this.name = name;
+            this.preserveLinks = preserveLinks;
+        }
+    }
+
+    interface Sender {
+        /**
+         * Send a batch of lookups.  Failures must be reported to the lookups' invocations.
+         *
+         * @param lookups the lookups (not empty)
+         */
+        void send(ArrayList<Lookup> lookups);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A cache of the raw responses of lookups through a naming provider.  Responses hold the marshalled object, so that
+ * each cache hit is unmarshalled into a distinct copy; the expiry policy is applied by the caller, using the age of
+ * each response.  When the cache is full, an arbitrary entry is evicted to make room.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class LookupCache {
+    private final ConcurrentHashMap<String, LookupResponse> entries = new ConcurrentHashMap<>();
+
+    LookupCache() {
+    }
+
+    static String keyOf(final String name, final boolean preserveLinks) {
+        return (preserveLinks ? "link:" : "name:") + name;
+    }
+
+    LookupResponse get(final String key) {
+        return entries.get(key);
+    }
+
+    void put(final String key, final LookupResponse response, final int maxSize) {
+        if (entries.size() >= maxSize && ! entries.containsKey(key)) {
+            final Iterator<String> iterator = entries.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        entries.put(key, response);
+    }
+
+    void remove(final String key, final LookupResponse response) {
+        entries.remove(key, response);
+    }
+
+    /**
+     * Remove the entries of a name, whether looked up with or without preserving links.
+     *
+     * @param name the name
+     */
+    void invalidate(final String name) {
+        entries.remove(keyOf(name, false));
+        entries.remove(keyOf(name, true));
+    }
+
+    void forEach(final BiConsumer<String, LookupResponse> action) {
+        entries.forEach(action);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.naming.Name;
+import javax.naming.NamingException;
+
+import org.jboss.marshalling.MarshallingConfiguration;
+
+/**
+ * The raw response to a lookup, which may be shared by several callers.  The marshalled object is retained along with
+ * the marshalling configuration of the transport which received it, which must be used to unmarshal it.  Responses
+ * which were not received from the server in this process, such as those loaded from a {@link LookupSnapshot}, are not
+ * validated, and are refreshed when first used; their age is measured from when they were loaded.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class LookupResponse {
+    private final MarshallingConfiguration configuration;
+    private final byte[] bytes;
+    private final boolean validated;
+    private final long receivedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    LookupResponse(final MarshallingConfiguration configuration, final byte[] bytes, final boolean validated) {
+        this.configuration = configuration;
+        this.bytes = bytes;
+        this.validated = validated;
+        receivedAt = System.nanoTime();
+    }
+
+    /**
+     * Get the result of the lookup for a caller.  Each call produces a distinct copy of the object.
+     *
+     * @param context the context performing the lookup
+     * @param name the name which was looked up
+     * @return the looked up object
+     * @throws NamingException if unmarshalling failed
+     */
+    Object getResult(final RemoteContext context, final Name name) throws NamingException {
+        return RemoteClientTransport.toLookupResult(configuration, context, name, bytes);
+    }
+
+    MarshallingConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Get the marshalled object.
+     *
+     * @return the marshalled object, or {@code null} if the name refers to a context
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    boolean isValidated() {
+        return validated;
+    }
+
+    long getAge(final long now) {
+        return now - receivedAt;
+    }
+
+    /**
+     * Claim the refresh of this cached response.  Only one caller may refresh a response.
+     *
+     * @return {@code true} if the caller should refresh the response, {@code false} if it is already being refreshed
+     */
+    boolean claimRefresh() {
+        return refreshing.compareAndSet(false, true);
+    }
+
+    void refreshFailed() {
+        refreshing.set(false);
+    }
+}
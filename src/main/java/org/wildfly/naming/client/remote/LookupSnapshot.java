@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.wildfly.naming.client._private.Messages;
+
+/**
+ * A snapshot file of the lookup caches of naming providers, which allows a new process to answer lookups before it has
+ * contacted any server.  The snapshot is read, memory-mapped, when the first provider using it is created; each
+ * provider's entries are placed in its lookup cache as unvalidated responses, which are refreshed from the server on
+ * first use.  The snapshot is written when the process exits, and optionally at regular intervals.
+ * <p>
+ * The file starts with a magic number and a format version; a file which is invalid or has an unknown format version
+ * is ignored.  It is written to a temporary file which then replaces the snapshot, so that a partially written file is
+ * never read.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class LookupSnapshot {
+    private static final int MAGIC = 0x57464e53;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_CLASS_TABLE = 1;
+
+    private static final ConcurrentHashMap<Path, LookupSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final ConcurrentHashMap<String, List<Entry>> loaded;
+    private final ConcurrentHashMap<String, RemoteNamingProvider> providers = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private LookupSnapshot(final Path path) {
+        this.path = path;
+        loaded = read(path);
+    }
+
+    /**
+     * Get the snapshot of a file, reading it if this is the first use of the file.
+     *
+     * @param path the snapshot file path
+     * @param intervalMillis the interval at which the snapshot is written, or 0 to write it only on exit
+     * @return the snapshot
+     */
+    static LookupSnapshot forFile(final Path path, final long intervalMillis) {
+        return snapshots.computeIfAbsent(path.toAbsolutePath(), p -> {
+            final LookupSnapshot snapshot = new LookupSnapshot(p);
+            final Thread hook = new Thread(snapshot::write, "naming snapshot writer");
+            Runtime.getRuntime().addShutdownHook(hook);
+            if (intervalMillis > 0) {
+                SchedulerHolder.SCHEDULER.scheduleWithFixedDelay(snapshot::write, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+            return snapshot;
+        });
+    }
+
+    /**
+     * Attach a newly created provider to this snapshot.  The provider's entries in the snapshot are added to its lookup
+     * cache, and its lookup cache will be included when the snapshot is written.
+     *
+     * @param providerKey the key which identifies the provider's server
+     * @param provider the provider
+     * @param maxSize the maximum size of the provider's lookup cache
+     */
+    void attach(final String providerKey, final RemoteNamingProvider provider, final int maxSize) {
+        final List<Entry> entries = loaded.remove(providerKey);
+        if (entries != null) {
+            final LookupCache cache = provider.getLookupCache();
+            for (Entry entry : entries) {
+                cache.put(entry.key, entry.response, maxSize);
+            }
+        }
+        providers.put(providerKey, provider);
+    }
+
+    /**
+     * Detach a discarded provider from this snapshot.  The entries of its lookup cache are retained, to be written or
+     * to be added to the cache of a new provider for the same server.
+     *
+     * @param providerKey the key which identifies the provider's server
+     * @param provider the provider
+     */
+    void detach(final String providerKey, final RemoteNamingProvider provider) {
+        if (providers.remove(providerKey, provider)) {
+            final List<Entry> entries = new ArrayList<>();
+            provider.getLookupCache().forEach((key, response) -> entries.add(new Entry(key, response)));
+            loaded.put(providerKey, entries);
+        }
+    }
+
+    /**
+     * Write the snapshot.  Entries which were loaded but whose provider was never created are written back unchanged.
+     */
+    void write() {
+        writeLock.lock();
+        try {
+            final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                os.writeInt(MAGIC);
+                os.writeInt(FORMAT_VERSION);
+                final Map<String, List<Entry>> all = new HashMap<>(loaded);
+                for (Map.Entry<String, RemoteNamingProvider> provider : providers.entrySet()) {
+                    final List<Entry> entries = new ArrayList<>();
+                    provider.getValue().getLookupCache().forEach((key, response) -> entries.add(new Entry(key, response)));
+                    all.put(provider.getKey(), entries);
+                }
+                os.writeInt(all.size());
+                for (Map.Entry<String, List<Entry>> provider : all.entrySet()) {
+                    writeString(os, provider.getKey());
+                    os.writeInt(provider.getValue().size());
+                    for (Entry entry : provider.getValue()) {
+                        final MarshallingConfiguration configuration = entry.response.getConfiguration();
+                        writeString(os, entry.key);
+                        os.writeByte(configuration.getVersion());
+                        os.writeByte(configuration.getClassTable() != null ? FLAG_CLASS_TABLE : 0);
+                        final byte[] bytes = entry.response.getBytes();
+                        if (bytes == null) {
+                            os.writeInt(-1);
+                        } else {
+                            os.writeInt(bytes.length);
+                            os.write(bytes);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Messages.log.snapshotWriteFailed(path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    static ConcurrentHashMap<String, List<Entry>> read(final Path path) {
+        final ConcurrentHashMap<String, List<Entry>> loaded = new ConcurrentHashMap<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown snapshot format");
+            }
+            // the loaded responses of each distinct marshalling configuration share a configuration and its class cache
+            final Map<Integer, MarshallingConfiguration> configurations = new HashMap<>();
+            final int providerCount = buffer.getInt();
+            for (int i = 0; i < providerCount; i ++) {
+                final String providerKey = readString(buffer);
+                final int entryCount = buffer.getInt();
+                final List<Entry> entries = new ArrayList<>(entryCount);
+                for (int j = 0; j < entryCount; j ++) {
+                    final String key = readString(buffer);
+                    final int marshallingVersion = buffer.get() & 0xff;
+                    final boolean classTable = (buffer.get() & FLAG_CLASS_TABLE) != 0;
+                    final int length = buffer.getInt();
+                    final byte[] bytes;
+                    if (length == -1) {
+                        bytes = null;
+                    } else {
+                        bytes = new byte[length];
+                        buffer.get(bytes);
+                    }
+                    final MarshallingConfiguration configuration = configurations.computeIfAbsent(Integer.valueOf(marshallingVersion << 1 | (classTable ? 1 : 0)), ignored -> RemoteClientTransport.createConfiguration(marshallingVersion, classTable));
+                    entries.add(new Entry(key, new LookupResponse(configuration, bytes, false)));
+                }
+                loaded.put(providerKey, entries);
+            }
+            return loaded;
+        } catch (NoSuchFileException e) {
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            Messages.log.invalidSnapshot(path, e);
+            return new ConcurrentHashMap<>();
+        }
+    }
+
+    private static void writeString(final DataOutputStream os, final String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    private static String readString(final MappedByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class Entry {
+        final String key;
+        final LookupResponse response;
+
+        Entry(final String key, final LookupResponse response) {
+            this.key = key;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.wildfly.naming.client.remote;
+
+import static java.security.AccessController.doPrivileged;
+
+import java.io.IOException;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.Vector;
+
+import javax.naming.BinaryRefAddr;
+import javax.naming.Binding;
+import javax.naming.CompositeName;
+import javax.naming.CompoundName;
+import javax.naming.LinkRef;
+import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.RefAddr;
+import javax.naming.Reference;
+import javax.naming.StringRefAddr;
+
+import org.jboss.marshalling.ClassResolver;
+import org.jboss.marshalling.ClassTable;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.Unmarshaller;
+import org.wildfly.naming.client.SimpleName;
+
+/**
+ * The class table used by connections which have negotiated the {@link Protocol#CAP_CLASS_TABLE} capability.  Common
+ * naming types are written as a single byte index into a fixed table instead of a full class descriptor.  Additional
+ * types may be registered with the {@value #REGISTERED_TYPES_PROPERTY} system property, as a comma-separated list of
+ * class names; these are written by name only, and are resolved by name on the receiving side, so both peers must have
+ * identical versions of those classes.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class NamingClassTable implements ClassTable {
+    static final String REGISTERED_TYPES_PROPERTY = "org.wildfly.naming.client.remote.class-table";
+
+    /**
+     * The fixed table of classes.  The index of each class is part of the protocol, so new entries may only be added
+     * at the end.
+     */
+    private static final Class<?>[] CLASSES = {
+        String.class,
+        byte[].class,
+        Object[].class,
+        Vector.class,
+        NameClassPair.class,
+        Binding.class,
+        CompositeName.class,
+        CompoundName.class,
+        Reference.class,
+        LinkRef.class,
+        RefAddr.class,
+        StringRefAddr.class,
+        BinaryRefAddr.class,
+        NamingException.class,
+        NameNotFoundException.class,
+        SimpleName.class,
+    };
+
+    private static final int BY_NAME = 0xff;
+
+    private static final IdentityHashMap<Class<?>, Writer> WRITERS;
+    private static final Set<String> REGISTERED_TYPES;
+
+    static {
+        final IdentityHashMap<Class<?>, Writer> writers = new IdentityHashMap<>(CLASSES.length);
+        for (int i = 0; i < CLASSES.length; i ++) {
+            final int index = i;
+            writers.put(CLASSES[i], (marshaller, clazz) -> marshaller.writeByte(index));
+        }
+        WRITERS = writers;
+        final String registered = doPrivileged((PrivilegedAction<String>) () -> System.getProperty(REGISTERED_TYPES_PROPERTY, ""));
+        final Set<String> types = new LinkedHashSet<>();
+        for (String name : registered.split(",")) {
+            name = name.trim();
+            if (! name.isEmpty()) {
+                types.add(name);
+            }
+        }
+        REGISTERED_TYPES = Collections.unmodifiableSet(types);
+    }
+
+    private static final Writer BY_NAME_WRITER = (marshaller, clazz) -> {
+        marshaller.writeByte(BY_NAME);
+        marshaller.writeUTF(clazz.getName());
+    };
+
+    private final ClassResolver classResolver;
+
+    NamingClassTable(final ClassResolver classResolver) {
+        this.classResolver = classResolver;
+    }
+
+    public Writer getClassWriter(final Class<?> clazz) throws IOException {
+        final Writer writer = WRITERS.get(clazz);
+        if (writer != null) {
+            return writer;
+        }
+        return REGISTERED_TYPES.contains(clazz.getName()) ? BY_NAME_WRITER : null;
+    }
+
+    public Class<?> readClass(final Unmarshaller unmarshaller) throws IOException, ClassNotFoundException {
+        final int index = unmarshaller.readUnsignedByte();
+        if (index == BY_NAME) {
+            return classResolver.resolveClass(unmarshaller, unmarshaller.readUTF(), 0L);
+        }
+        if (index >= CLASSES.length) {
+            throw new ClassNotFoundException("Unknown class table index " + index);
+        }
+        return CLASSES[index];
+    }
+}
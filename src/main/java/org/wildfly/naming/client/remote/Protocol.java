@@ -35,21 +35,44 @@ final class Protocol {
     static final int P_BINDING = 0x04;
     static final int P_CONTEXT = 0x05;
     static final int P_LIST = 0x06;
+    static final int P_EVENT = 0x07;
 
-    static final int CMD_LOOKUP         = 0x01;
-    static final int CMD_BIND           = 0x02;
-    static final int CMD_REBIND         = 0x03;
-    static final int CMD_LIST           = 0x04;
-    static final int CMD_LIST_BINDINGS  = 0x05;
-    static final int CMD_UNBIND         = 0x06;
-    static final int CMD_RENAME         = 0x07;
-    static final int CMD_CREATE_SUBCTX  = 0x08;
-    static final int CMD_DESTROY_SUBCTX = 0x09;
-    // unused                           = 0x0A;
-    // unused                           = 0x0B;
-    // unused                           = 0x0C;
-    // unused                           = 0x0D;
-    // unused                           = 0x0E;
-    // unused                           = 0x0F;
-    static final int CMD_LOOKUP_LINK    = 0x10;
+    // response result codes
+
+    static final int SUCCESS = 0x00;
+    static final int FAILURE = 0x01;
+    // a non-final response; the invocation remains registered for further responses
+    static final int PARTIAL = 0x02;
+
+    static final int CMD_LOOKUP          = 0x01;
+    static final int CMD_BIND            = 0x02;
+    static final int CMD_REBIND          = 0x03;
+    static final int CMD_LIST            = 0x04;
+    static final int CMD_LIST_BINDINGS   = 0x05;
+    static final int CMD_UNBIND          = 0x06;
+    static final int CMD_RENAME          = 0x07;
+    static final int CMD_CREATE_SUBCTX   = 0x08;
+    static final int CMD_DESTROY_SUBCTX  = 0x09;
+    static final int CMD_ADD_LISTENER    = 0x0A;
+    static final int CMD_REMOVE_LISTENER = 0x0B;
+    // several lookups in one message (CAP_LOOKUP_BATCH); each is answered separately
+    static final int CMD_LOOKUP_BATCH    = 0x0C;
+    // a recursive listing of a subtree (CAP_WALK), answered in chunks
+    static final int CMD_WALK            = 0x0D;
+    // listings of the entries whose names match a pattern (CAP_LIST_MATCHING)
+    static final int CMD_LIST_MATCHING   = 0x0E;
+    static final int CMD_LIST_BINDINGS_MATCHING = 0x0F;
+    static final int CMD_LOOKUP_LINK     = 0x10;
+
+    // capabilities (version 2 only); the server may list these after its supported versions
+
+    static final int CAP_EVENTS = 0x00;
+    // common classes are written using NamingClassTable
+    static final int CAP_CLASS_TABLE = 0x01;
+    // the server accepts CMD_LOOKUP_BATCH
+    static final int CAP_LOOKUP_BATCH = 0x02;
+    // the server accepts CMD_WALK
+    static final int CAP_WALK = 0x03;
+    // the server accepts CMD_LIST_MATCHING and CMD_LIST_BINDINGS_MATCHING
+    static final int CAP_LIST_MATCHING = 0x04;
 }
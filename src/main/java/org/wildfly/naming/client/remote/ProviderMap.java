@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.wildfly.naming.client.remote;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * The managed providers of an endpoint.  Each provider is reference counted, one reference being held by each naming
+ * context which was given the provider until the context is closed.  Providers without references are removed once they
+ * have been idle for their idle timeout, or earlier, least recently used first, when the map exceeds its maximum size.
+ * Providers which are still referenced are never removed, so the maximum size may be exceeded while they are in use.
+ * <p>
+ * Removing a provider does not close its connection, which is managed by the endpoint.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ProviderMap {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final HashMap<RemoteNamingProviderFactory.URIKey, Entry> entries = new HashMap<>();
+    private ScheduledFuture<?> sweeper;
+
+    /**
+     * Get the provider for a key, creating it if necessary, and acquire a reference to it.  The reference is a provider
+     * which shares the state of the entry's provider, and is released by closing it; closing it again has no effect.
+     *
+     * @param key the key
+     * @param factory the function which creates the entry's provider, given the entry
+     * @param idleTimeoutMillis the time after which the provider is removed once it has no references
+     * @param maxSize the maximum number of providers
+     * @return the reference (not {@code null})
+     */
+    RemoteNamingProvider acquire(final RemoteNamingProviderFactory.URIKey key, final Function<Entry, RemoteNamingProvider> factory, final long idleTimeoutMillis, final int maxSize) {
+        final ArrayList<Entry> evicted = new ArrayList<>();
+        final Entry entry;
+        lock.lock();
+        try {
+            Entry existing = entries.get(key);
+            if (existing == null) {
+                existing = new Entry(key);
+                existing.provider = factory.apply(existing);
+                entries.put(key, existing);
+                if (entries.size() > maxSize) {
+                    evictIdle(evicted, entries.size() - maxSize);
+                }
+            }
+            existing.references ++;
+            existing.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+            entry = existing;
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(Entry::evicted);
+        final AtomicBoolean released = new AtomicBoolean();
+        return new RemoteNamingProvider(entry.provider, () -> {
+            if (released.compareAndSet(false, true)) {
+                release(entry);
+            }
+        });
+    }
+
+    void release(final Entry entry) {
+        lock.lock();
+        try {
+            assert entry.references > 0;
+            if (entry.references > 0 && -- entry.references == 0) {
+                entry.idleSince = System.nanoTime();
+                if (sweeper == null) {
+                    sweeper = SchedulerHolder.SCHEDULER.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictIdle(final ArrayList<Entry> evicted, int count) {
+        while (count > 0) {
+            Entry oldest = null;
+            for (Entry entry : entries.values()) {
+                if (entry.references == 0 && (oldest == null || entry.idleSince - oldest.idleSince < 0)) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            entries.remove(oldest.key);
+            evicted.add(oldest);
+            count --;
+        }
+    }
+
+    void sweep() {
+        final ArrayList<Entry> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            final long now = System.nanoTime();
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                final Entry entry = iterator.next();
+                if (entry.references == 0 && now - entry.idleSince >= entry.idleTimeoutNanos) {
+                    iterator.remove();
+                    evicted.add(entry);
+                }
+            }
+            if (entries.isEmpty() && sweeper != null) {
+                sweeper.cancel(false);
+                sweeper = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(Entry::evicted);
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    final class Entry {
+        private final RemoteNamingProviderFactory.URIKey key;
+        private RemoteNamingProvider provider;
+        private Runnable onEviction;
+        // protected by the map lock
+        private int references;
+        private long idleSince;
+        private long idleTimeoutNanos;
+
+        Entry(final RemoteNamingProviderFactory.URIKey key) {
+            this.key = key;
+        }
+
+        RemoteNamingProviderFactory.URIKey getKey() {
+            return key;
+        }
+
+        /**
+         * Set the action to run when this entry's provider is removed.  Must be called from the factory.
+         *
+         * @param onEviction the action
+         */
+        void setOnEviction(final Runnable onEviction) {
+            this.onEviction = onEviction;
+        }
+
+        void evicted() {
+            final Runnable onEviction = this.onEviction;
+            if (onEviction != null) {
+                onEviction.run();
+            }
+        }
+    }
+}
@@ -22,11 +22,19 @@
 
 package org.wildfly.naming.client.remote;
 
+import static java.security.AccessController.doPrivileged;
 import static org.xnio.IoUtils.safeClose;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.function.IntUnaryOperator;
 
 import javax.naming.Binding;
@@ -34,20 +42,21 @@ import javax.naming.CompositeName;
 import javax.naming.Name;
 import javax.naming.NameClassPair;
 import javax.naming.NamingException;
+import javax.naming.event.NamingListener;
 
-import org.jboss.marshalling.ContextClassResolver;
 import org.jboss.marshalling.Marshaller;
 import org.jboss.marshalling.Marshalling;
 import org.jboss.marshalling.MarshallingConfiguration;
 import org.jboss.marshalling.Unmarshaller;
+import org.jboss.remoting3.Attachments;
 import org.jboss.remoting3.Channel;
 import org.jboss.remoting3.ClientServiceHandle;
 import org.jboss.remoting3.MessageInputStream;
 import org.jboss.remoting3.MessageOutputStream;
-import org.jboss.remoting3.util.BlockingInvocation;
 import org.jboss.remoting3.util.InvocationTracker;
 import org.wildfly.naming.client.CloseableNamingEnumeration;
 import org.wildfly.naming.client._private.Messages;
+import org.wildfly.naming.client.store.ListenerHandle;
 import org.wildfly.naming.client.store.RelativeFederatingContext;
 import org.wildfly.naming.client.util.FastHashtable;
 import org.wildfly.naming.client.util.NamingUtils;
@@ -68,17 +77,114 @@ final class RemoteClientTransport {
     private final InvocationTracker tracker;
     private final Channel channel;
     private final int version;
+    private final int capabilities;
+    private final InvocationLimiter limiter;
+    private final LookupBatcher lookupBatcher;
+    private final long queueTimeoutNanos;
+    private final long batchWindowNanos;
+    private final int batchSize;
+
+    /**
+     * The default maximum number of outstanding invocations of each naming channel, given by the system property of the
+     * same name as the {@linkplain RemoteNamingProviderFactory#MAX_OUTSTANDING_INVOCATIONS environment attribute}.
+     */
+    static final int DEFAULT_MAX_OUTSTANDING_INVOCATIONS = doPrivileged((PrivilegedAction<Integer>) () -> Integer.getInteger(RemoteNamingProviderFactory.MAX_OUTSTANDING_INVOCATIONS, 1024)).intValue();
+
+    /**
+     * The connection attachment giving the maximum number of outstanding invocations of the naming channel which is
+     * opened on the connection.
+     */
+    static final Attachments.Key<Integer> MAX_OUTSTANDING_INVOCATIONS_KEY = new Attachments.Key<>(Integer.class);
 
     private static final byte[] initialBytes = {
         'n', 'a', 'm', 'i', 'n', 'g'
     };
 
-    RemoteClientTransport(final Channel channel, final int version, final MarshallingConfiguration configuration) {
-        configuration.setClassResolver(new ContextClassResolver());
+    private static final int SUPPORTED_CAPABILITIES = 1 << Protocol.CAP_EVENTS | 1 << Protocol.CAP_CLASS_TABLE | 1 << Protocol.CAP_LOOKUP_BATCH | 1 << Protocol.CAP_WALK | 1 << Protocol.CAP_LIST_MATCHING;
+
+    RemoteClientTransport(final Channel channel, final int version, final int capabilities, final MarshallingConfiguration configuration, final int maxOutstandingInvocations) {
         this.channel = channel;
         this.configuration = configuration;
         this.version = version;
+        this.capabilities = capabilities;
         tracker = new InvocationTracker(channel, version == 1 ? IntUnaryOperator.identity() : RemoteClientTransport::defaultFunction);
+        // the 16-bit invocation IDs of later versions can never all be outstanding at once
+        final int limit = version == 1 ? maxOutstandingInvocations : Math.min(maxOutstandingInvocations, 0x8000);
+        limiter = limit > 0 ? new InvocationLimiter(limit) : null;
+        lookupBatcher = hasCapability(Protocol.CAP_LOOKUP_BATCH) ? new LookupBatcher(this::sendLookupBatch) : null;
+        queueTimeoutNanos = -1;
+        batchWindowNanos = 0;
+        batchSize = 1;
+    }
+
+    private RemoteClientTransport(final RemoteClientTransport original, final long queueTimeoutNanos, final long batchWindowNanos, final int batchSize) {
+        channel = original.channel;
+        configuration = original.configuration;
+        version = original.version;
+        capabilities = original.capabilities;
+        tracker = original.tracker;
+        limiter = original.limiter;
+        lookupBatcher = original.lookupBatcher;
+        this.queueTimeoutNanos = queueTimeoutNanos;
+        this.batchWindowNanos = batchWindowNanos;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get a view of this transport with the given caller options.
+     *
+     * @param queueTimeoutNanos the time to wait when the channel has too many outstanding invocations, {@code 0} to
+     *     fail immediately, or a negative number to wait without limit
+     * @param batchWindowNanos the time to gather concurrent lookups into one message, or {@code 0} to send each lookup
+     *     immediately
+     * @param batchSize the number of lookups at which a batch is sent without waiting for the rest of its window
+     * @return the view (not {@code null})
+     */
+    RemoteClientTransport withOptions(final long queueTimeoutNanos, final long batchWindowNanos, final int batchSize) {
+        if (queueTimeoutNanos == this.queueTimeoutNanos && batchWindowNanos == this.batchWindowNanos && batchSize == this.batchSize) {
+            return this;
+        }
+        return new RemoteClientTransport(this, queueTimeoutNanos, batchWindowNanos, batchSize);
+    }
+
+    InvocationLimiter getLimiter() {
+        return limiter;
+    }
+
+    private ClientInvocation addInvocation() throws NamingException {
+        final InvocationLimiter limiter = this.limiter;
+        if (limiter == null) {
+            return tracker.addInvocation(ClientInvocation::new);
+        }
+        limiter.acquire(queueTimeoutNanos);
+        try {
+            return tracker.addInvocation(id -> new ClientInvocation(id, limiter::release));
+        } catch (Throwable t) {
+            limiter.release();
+            throw t;
+        }
+    }
+
+    /**
+     * Create a marshalling configuration.
+     *
+     * @param marshallingVersion the River protocol version
+     * @param classTable {@code true} if the {@link NamingClassTable} is used, {@code false} otherwise
+     * @return the configuration
+     */
+    static MarshallingConfiguration createConfiguration(final int marshallingVersion, final boolean classTable) {
+        final MarshallingConfiguration configuration = new MarshallingConfiguration();
+        configuration.setVersion(marshallingVersion);
+        final CachingClassResolver classResolver = new CachingClassResolver();
+        configuration.setClassResolver(classResolver);
+        if (classTable) {
+            configuration.setClassTable(new NamingClassTable(classResolver));
+        }
+        return configuration;
+    }
+
+    MarshallingConfiguration getConfiguration() {
+        return configuration;
     }
 
     private static int defaultFunction(int random) {
@@ -118,12 +224,30 @@ final class RemoteClientTransport {
                         futureResult.setException(new IOException(Messages.log.noCompatibleVersions()));
                         return;
                     }
-                    final MarshallingConfiguration configuration = new MarshallingConfiguration();
-                    configuration.setVersion(version == 2 ? 4 : 2);
-                    RemoteClientTransport remoteClientTransport = new RemoteClientTransport(channel, version, configuration);
+                    // a version 2 server may follow the version list with the list of capabilities it offers
+                    int capabilities = 0;
+                    final int capabilityCount = version == 2 ? mis.read() : -1;
+                    for (int i = 0; i < capabilityCount; i ++) {
+                        int c = mis.readUnsignedByte();
+                        if (c < 32) {
+                            capabilities |= (1 << c) & SUPPORTED_CAPABILITIES;
+                        }
+                    }
+                    final MarshallingConfiguration configuration = createConfiguration(version == 2 ? 4 : 2, (capabilities & 1 << Protocol.CAP_CLASS_TABLE) != 0);
+                    final Integer maxOutstandingInvocations = channel.getConnection().getAttachments().getAttachment(MAX_OUTSTANDING_INVOCATIONS_KEY);
+                    RemoteClientTransport remoteClientTransport = new RemoteClientTransport(channel, version, capabilities, configuration, maxOutstandingInvocations == null ? DEFAULT_MAX_OUTSTANDING_INVOCATIONS : maxOutstandingInvocations.intValue());
                     try (MessageOutputStream os = remoteClientTransport.tracker.allocateMessage()) {
                         os.write(initialBytes);
                         os.writeByte(version);
+                        if (capabilityCount != -1) {
+                            // acknowledge the capabilities that we will use
+                            os.writeByte(Integer.bitCount(capabilities));
+                            for (int c = 0; c < 32; c ++) {
+                                if ((capabilities & 1 << c) != 0) {
+                                    os.writeByte(c);
+                                }
+                            }
+                        }
                     }
                     remoteClientTransport.start();
                     futureResult.setResult(remoteClientTransport);
@@ -156,18 +280,28 @@ final class RemoteClientTransport {
             }
 
             public void handleMessage(final Channel channel, final MessageInputStream message) {
-                try (MessageInputStream mis = message) {
-                    final int id = readId(mis);
-                    final int result = mis.readUnsignedByte();
-                    tracker.signalResponse(id, result, mis, true);
-                    channel.receiveMessage(this);
+                try {
+                    final int id = readId(message);
+                    final int result = message.readUnsignedByte();
+                    // the invocation consumes and closes the stream, possibly on another thread
+                    if (! tracker.signalResponse(id, result, message, result != Protocol.PARTIAL)) {
+                        // no such invocation
+                        safeClose(message);
+                    }
                 } catch (IOException e) {
+                    safeClose(message);
                     safeClose(channel);
+                    return;
                 }
+                channel.receiveMessage(this);
             }
         });
     }
 
+    boolean hasCapability(final int capability) {
+        return (capabilities & 1 << capability) != 0;
+    }
+
     int readId(final MessageInputStream stream) throws IOException {
         return version == 1 ? stream.readInt() : stream.readUnsignedShort();
     }
@@ -180,8 +314,21 @@ final class RemoteClientTransport {
         }
     }
 
-    Object lookup(final RemoteContext context, final Name name, final boolean preserveLinks) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+    /**
+     * Send a lookup request without waiting for its response.
+     *
+     * @param name the name to look up
+     * @param preserveLinks {@code true} to look up links rather than following them
+     * @return the invocation, whose response is read by {@link #readLookup}
+     * @throws NamingException if the request could not be sent
+     */
+    ClientInvocation sendLookup(final Name name, final boolean preserveLinks) throws NamingException {
+        final ClientInvocation invocation = addInvocation();
+        final LookupBatcher lookupBatcher = this.lookupBatcher;
+        if (lookupBatcher != null && batchWindowNanos > 0 && batchSize > 1) {
+            lookupBatcher.add(new LookupBatcher.Lookup(invocation, NamingUtils.toCompositeName(name).toString(), preserveLinks), batchWindowNanos, batchSize);
+            return invocation;
+        }
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 // lookup
@@ -196,13 +343,60 @@ final class RemoteClientTransport {
                     messageOutputStream.writeUTF(NamingUtils.toCompositeName(name).toString());
                 }
             }
-            final BlockingInvocation.Response response = invocation.getResponse();
-            try (MessageInputStream is = response.getInputStream()) {
-                if (is.readUnsignedByte() == Protocol.P_CONTEXT) {
+            return invocation;
+        } catch (IOException e) {
+            invocation.cancel();
+            throw Messages.log.operationFailed(e);
+        }
+    }
+
+    private void sendLookupBatch(final ArrayList<LookupBatcher.Lookup> lookups) {
+        try (MessageOutputStream messageOutputStream = tracker.allocateMessage()) {
+            if (lookups.size() == 1) {
+                final LookupBatcher.Lookup lookup = lookups.get(0);
+                messageOutputStream.writeByte(lookup.preserveLinks ? Protocol.CMD_LOOKUP_LINK : Protocol.CMD_LOOKUP);
+                writeId(messageOutputStream, lookup.invocation.getIndex());
+                messageOutputStream.writeUTF(lookup.name);
+            } else {
+                messageOutputStream.writeByte(Protocol.CMD_LOOKUP_BATCH);
+                messageOutputStream.writeShort(lookups.size());
+                for (LookupBatcher.Lookup lookup : lookups) {
+                    writeId(messageOutputStream, lookup.invocation.getIndex());
+                    messageOutputStream.writeBoolean(lookup.preserveLinks);
+                    messageOutputStream.writeUTF(lookup.name);
+                }
+            }
+        } catch (IOException e) {
+            // the callers are waiting for responses which will never come
+            for (LookupBatcher.Lookup lookup : lookups) {
+                tracker.remove(lookup.invocation);
+                lookup.invocation.handleClosed();
+            }
+        }
+    }
+
+    /**
+     * Wait for and read the response to a lookup request.
+     *
+     * @param context the context performing the lookup
+     * @param name the name which was looked up
+     * @param invocation the invocation returned by {@link #sendLookup}
+     * @return the looked up object
+     * @throws NamingException if the lookup failed
+     */
+    Object readLookup(final RemoteContext context, final Name name, final ClientInvocation invocation) throws NamingException {
+        try {
+            try (MessageInputStream is = getResponseStream(invocation)) {
+                final int type = is.readUnsignedByte();
+                if (type == Protocol.P_CONTEXT) {
                     return new RelativeFederatingContext(new FastHashtable<>(context.getEnvironment()), context, NamingUtils.toCompositeName(name));
-                } else if (is.readUnsignedByte() != Protocol.P_OBJECT) {
+                } else if (type != Protocol.P_OBJECT) {
                     throw Messages.log.invalidResponse();
                 }
+                if (Boolean.parseBoolean(String.valueOf(context.getEnvironment().get(RemoteNamingProviderFactory.LAZY_LOOKUP)))) {
+                    // defer unmarshalling until the object is used
+                    return new LazyObject(configuration, readRemaining(is), Thread.currentThread().getContextClassLoader());
+                }
                 try (Unmarshaller unmarshaller = createUnmarshaller(is)) {
                     return unmarshaller.readObject();
                 }
@@ -216,26 +410,80 @@ final class RemoteClientTransport {
         }
     }
 
+    /**
+     * Wait for and read the raw response to a lookup request, without unmarshalling it.
+     *
+     * @param invocation the invocation returned by {@link #sendLookup}
+     * @return the marshalled object, or {@code null} if the name refers to a context
+     * @throws NamingException if the lookup failed
+     */
+    byte[] readLookupBytes(final ClientInvocation invocation) throws NamingException {
+        try {
+            try (MessageInputStream is = getResponseStream(invocation)) {
+                final int type = is.readUnsignedByte();
+                if (type == Protocol.P_CONTEXT) {
+                    return null;
+                } else if (type != Protocol.P_OBJECT) {
+                    throw Messages.log.invalidResponse();
+                }
+                return readRemaining(is);
+            }
+        } catch (IOException e) {
+            throw Messages.log.operationFailed(e);
+        } catch (InterruptedException e) {
+            invocation.cancel();
+            Thread.currentThread().interrupt();
+            throw Messages.log.operationInterrupted();
+        }
+    }
+
+    /**
+     * Get the result of a lookup from its raw response, as read by {@link #readLookupBytes}.  Each call produces a
+     * distinct copy of the object.
+     *
+     * @param configuration the marshalling configuration of the transport which received the response
+     * @param context the context performing the lookup
+     * @param name the name which was looked up
+     * @param bytes the marshalled object, or {@code null} if the name refers to a context
+     * @return the looked up object
+     * @throws NamingException if unmarshalling failed
+     */
+    static Object toLookupResult(final MarshallingConfiguration configuration, final RemoteContext context, final Name name, final byte[] bytes) throws NamingException {
+        if (bytes == null) {
+            return new RelativeFederatingContext(new FastHashtable<>(context.getEnvironment()), context, NamingUtils.toCompositeName(name));
+        }
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (Boolean.parseBoolean(String.valueOf(context.getEnvironment().get(RemoteNamingProviderFactory.LAZY_LOOKUP)))) {
+            return new LazyObject(configuration, bytes, classLoader);
+        }
+        return unmarshal(configuration, bytes, classLoader);
+    }
+
     void bind(final Name name, final Object obj, final boolean rebind) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+        // marshal first, so that an object which cannot be marshalled does not leave a partial request on the channel
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (Marshaller marshaller = createMarshaller(body)) {
+            if (version == 1) {
+                marshaller.writeByte(Protocol.P_NAME);
+                marshaller.writeObject(name);
+            } else {
+                marshaller.writeUTF(NamingUtils.toCompositeName(name).toString());
+            }
+            if (version == 1) marshaller.writeByte(Protocol.P_OBJECT);
+            marshaller.writeObject(obj);
+        } catch (IOException e) {
+            throw Messages.log.operationFailed(e);
+        }
+        final ClientInvocation invocation = addInvocation();
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 // bind
                 messageOutputStream.writeByte(rebind ? Protocol.CMD_REBIND : Protocol.CMD_BIND);
                 writeId(messageOutputStream, invocation.getIndex());
-                try (Marshaller marshaller = createMarshaller(messageOutputStream)) {
-                    if (version == 1) {
-                        marshaller.writeByte(Protocol.P_NAME);
-                        marshaller.writeObject(name);
-                    } else {
-                        marshaller.writeUTF(NamingUtils.toCompositeName(name).toString());
-                    }
-                    if (version == 1) marshaller.writeByte(Protocol.P_OBJECT);
-                    marshaller.writeObject(obj);
-                }
+                body.writeTo(messageOutputStream);
             }
             // no content
-            invocation.getResponse().getInputStream().close();
+            getResponseStream(invocation).close();
         } catch (IOException e) {
             throw Messages.log.operationFailed(e);
         } catch (InterruptedException e) {
@@ -246,7 +494,7 @@ final class RemoteClientTransport {
     }
 
     void unbind(final Name name) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+        final ClientInvocation invocation = addInvocation();
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 // bind
@@ -262,7 +510,7 @@ final class RemoteClientTransport {
                 }
             }
             // no response content
-            invocation.getResponse().getInputStream().close();
+            getResponseStream(invocation).close();
         } catch (IOException e) {
             throw Messages.log.operationFailed(e);
         } catch (InterruptedException e) {
@@ -273,7 +521,7 @@ final class RemoteClientTransport {
     }
 
     void rename(final Name oldName, final Name newName) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+        final ClientInvocation invocation = addInvocation();
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 messageOutputStream.writeByte(Protocol.CMD_RENAME);
@@ -291,7 +539,7 @@ final class RemoteClientTransport {
                 }
             }
             // no response content
-            invocation.getResponse().getInputStream().close();
+            getResponseStream(invocation).close();
         } catch (IOException e) {
             throw Messages.log.operationFailed(e);
         } catch (InterruptedException e) {
@@ -302,7 +550,7 @@ final class RemoteClientTransport {
     }
 
     void destroySubcontext(final Name name) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+        final ClientInvocation invocation = addInvocation();
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 // bind
@@ -318,7 +566,7 @@ final class RemoteClientTransport {
                 }
             }
             // no response content
-            invocation.getResponse().getInputStream().close();
+            getResponseStream(invocation).close();
         } catch (IOException e) {
             throw Messages.log.operationFailed(e);
         } catch (InterruptedException e) {
@@ -329,7 +577,7 @@ final class RemoteClientTransport {
     }
 
     void createSubcontext(final CompositeName compositeName) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+        final ClientInvocation invocation = addInvocation();
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 // bind
@@ -345,7 +593,7 @@ final class RemoteClientTransport {
                 }
             }
             // no response content
-            invocation.getResponse().getInputStream().close();
+            getResponseStream(invocation).close();
         } catch (IOException e) {
             throw Messages.log.operationFailed(e);
         } catch (InterruptedException e) {
@@ -356,12 +604,20 @@ final class RemoteClientTransport {
     }
 
     CloseableNamingEnumeration<NameClassPair> list(final Name name) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+        return list(name, null);
+    }
+
+    /**
+     * List the entries of a context, or only those whose names match a pattern; the latter requires
+     * {@link Protocol#CAP_LIST_MATCHING}.
+     */
+    CloseableNamingEnumeration<NameClassPair> list(final Name name, final String pattern) throws NamingException {
+        final ClientInvocation invocation = addInvocation();
         final CompositeName compositeName = NamingUtils.toCompositeName(name);
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 // bind
-                messageOutputStream.writeByte(Protocol.CMD_LIST);
+                messageOutputStream.writeByte(pattern == null ? Protocol.CMD_LIST : Protocol.CMD_LIST_MATCHING);
                 writeId(messageOutputStream, invocation.getIndex());
                 if (version == 1) {
                     try (Marshaller marshaller = createMarshaller(messageOutputStream)) {
@@ -370,10 +626,12 @@ final class RemoteClientTransport {
                     }
                 } else {
                     messageOutputStream.writeUTF(compositeName.toString());
+                    if (pattern != null) {
+                        messageOutputStream.writeUTF(pattern);
+                    }
                 }
             }
-            final BlockingInvocation.Response response = invocation.getResponse();
-            try (MessageInputStream is = response.getInputStream()) {
+            try (MessageInputStream is = getResponseStream(invocation)) {
                 if (version == 1) {
                     if (is.readUnsignedByte() != Protocol.P_LIST) {
                         throw Messages.log.invalidResponse();
@@ -411,12 +669,20 @@ final class RemoteClientTransport {
     }
 
     CloseableNamingEnumeration<Binding> listBindings(final Name name, final RemoteContext remoteContext) throws NamingException {
-        final BlockingInvocation invocation = tracker.addInvocation(BlockingInvocation::new);
+        return listBindings(name, null, remoteContext);
+    }
+
+    /**
+     * List the bindings of a context, or only those whose names match a pattern; the latter requires
+     * {@link Protocol#CAP_LIST_MATCHING}.
+     */
+    CloseableNamingEnumeration<Binding> listBindings(final Name name, final String pattern, final RemoteContext remoteContext) throws NamingException {
+        final ClientInvocation invocation = addInvocation();
         final CompositeName compositeName = NamingUtils.toCompositeName(name);
         try {
             try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
                 // bind
-                messageOutputStream.writeByte(Protocol.CMD_LIST);
+                messageOutputStream.writeByte(pattern == null ? Protocol.CMD_LIST_BINDINGS : Protocol.CMD_LIST_BINDINGS_MATCHING);
                 writeId(messageOutputStream, invocation.getIndex());
                 if (version == 1) {
                     try (Marshaller marshaller = createMarshaller(messageOutputStream)) {
@@ -425,10 +691,12 @@ final class RemoteClientTransport {
                     }
                 } else {
                     messageOutputStream.writeUTF(compositeName.toString());
+                    if (pattern != null) {
+                        messageOutputStream.writeUTF(pattern);
+                    }
                 }
             }
-            final BlockingInvocation.Response response = invocation.getResponse();
-            try (MessageInputStream is = response.getInputStream()) {
+            try (MessageInputStream is = getResponseStream(invocation)) {
                 if (version == 1 && is.readUnsignedByte() != Protocol.P_LIST) {
                     throw Messages.log.invalidResponse();
                 }
@@ -461,13 +729,214 @@ final class RemoteClientTransport {
         }
     }
 
-    private Unmarshaller createUnmarshaller(MessageInputStream is) throws IOException {
+    CloseableNamingEnumeration<NameClassPair> walk(final Name name, final int maxDepth) throws NamingException {
+        final ClientInvocation invocation = addInvocation();
+        try {
+            try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
+                messageOutputStream.writeByte(Protocol.CMD_WALK);
+                writeId(messageOutputStream, invocation.getIndex());
+                messageOutputStream.writeUTF(NamingUtils.toCompositeName(name).toString());
+                messageOutputStream.writeInt(maxDepth);
+            }
+            final WalkEnumeration enumeration = new WalkEnumeration(invocation);
+            // read the first chunk now, so that a failure is reported by this call
+            enumeration.readChunk();
+            return enumeration;
+        } catch (IOException e) {
+            throw Messages.log.operationFailed(e);
+        } catch (InterruptedException e) {
+            invocation.cancel();
+            Thread.currentThread().interrupt();
+            throw Messages.log.operationInterrupted();
+        }
+    }
+
+    /**
+     * The entries of a subtree, which the server sends as a series of partial responses; each is read once the
+     * entries before it have been consumed.
+     */
+    final class WalkEnumeration implements CloseableNamingEnumeration<NameClassPair> {
+        private final ClientInvocation invocation;
+        private final ArrayDeque<NameClassPair> entries = new ArrayDeque<>();
+        private boolean done;
+
+        WalkEnumeration(final ClientInvocation invocation) {
+            this.invocation = invocation;
+        }
+
+        void readChunk() throws IOException, InterruptedException, NamingException {
+            final ClientInvocation.Response response = invocation.getResponse();
+            try (MessageInputStream is = response.getInputStream()) {
+                final int result = response.getParameter();
+                if (result == Protocol.FAILURE) {
+                    done = true;
+                    throw readException(is);
+                }
+                done = result != Protocol.PARTIAL;
+                if (is.readUnsignedByte() != Protocol.P_LIST) {
+                    throw Messages.log.invalidResponse();
+                }
+                final int count = is.readInt();
+                for (int i = 0; i < count; i ++) {
+                    final String itemName = is.readUTF();
+                    final String itemClass = is.readUTF();
+                    entries.add(new NameClassPair(itemName, itemClass, true));
+                }
+            } catch (IOException | NamingException e) {
+                close();
+                throw e;
+            }
+        }
+
+        public boolean hasMore() throws NamingException {
+            try {
+                while (entries.isEmpty() && ! done) {
+                    readChunk();
+                }
+            } catch (IOException e) {
+                throw Messages.log.operationFailed(e);
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw Messages.log.operationInterrupted();
+            }
+            return ! entries.isEmpty();
+        }
+
+        public NameClassPair next() throws NamingException {
+            if (! hasMore()) {
+                throw new NoSuchElementException();
+            }
+            return entries.poll();
+        }
+
+        public boolean hasMoreElements() {
+            try {
+                return hasMore();
+            } catch (NamingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public NameClassPair nextElement() {
+            try {
+                return next();
+            } catch (NamingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void close() {
+            if (! done) {
+                done = true;
+                // the remaining chunks are discarded as they arrive
+                invocation.cancel();
+            }
+            entries.clear();
+        }
+    }
+
+    ListenerHandle addListener(final RemoteContext context, final Name name, final int scope, final NamingListener listener) throws NamingException {
+        if (! hasCapability(Protocol.CAP_EVENTS)) {
+            throw Messages.log.notSupported();
+        }
+        final ListenerInvocation invocation = tracker.addInvocation(id -> new ListenerInvocation(id, this, context, listener, channel.getConnection().getEndpoint().getXnioWorker()));
+        try {
+            try (MessageOutputStream messageOutputStream = tracker.allocateMessage(invocation)) {
+                messageOutputStream.writeByte(Protocol.CMD_ADD_LISTENER);
+                writeId(messageOutputStream, invocation.getIndex());
+                messageOutputStream.writeUTF(NamingUtils.toCompositeName(name).toString());
+                messageOutputStream.writeByte(scope);
+                messageOutputStream.writeByte(ListenerInvocation.interestMask(listener));
+            }
+            invocation.awaitRegistration();
+            return invocation;
+        } catch (IOException e) {
+            tracker.remove(invocation);
+            throw Messages.log.operationFailed(e);
+        } catch (InterruptedException e) {
+            invocation.close();
+            Thread.currentThread().interrupt();
+            throw Messages.log.operationInterrupted();
+        }
+    }
+
+    void removeListener(final ListenerInvocation invocation) {
+        // the server acknowledges the removal with a final response to the registration
+        try (MessageOutputStream messageOutputStream = tracker.allocateMessage()) {
+            messageOutputStream.writeByte(Protocol.CMD_REMOVE_LISTENER);
+            writeId(messageOutputStream, invocation.getIndex());
+        } catch (IOException e) {
+            tracker.remove(invocation);
+        }
+    }
+
+    private MessageInputStream getResponseStream(final ClientInvocation invocation) throws IOException, InterruptedException, NamingException {
+        final ClientInvocation.Response response = invocation.getResponse();
+        final MessageInputStream is = response.getInputStream();
+        if (response.getParameter() == Protocol.FAILURE) {
+            try {
+                throw readException(is);
+            } finally {
+                safeClose(is);
+            }
+        }
+        return is;
+    }
+
+    NamingException readException(final MessageInputStream is) throws IOException {
+        if (is.readUnsignedByte() != Protocol.P_EXCEPTION) {
+            return Messages.log.invalidResponse();
+        }
+        final Object exception;
+        try (Unmarshaller unmarshaller = createUnmarshaller(is)) {
+            exception = unmarshaller.readObject();
+        } catch (ClassNotFoundException e) {
+            return Messages.log.operationFailed(e);
+        }
+        if (exception instanceof NamingException) {
+            return (NamingException) exception;
+        } else if (exception instanceof Throwable) {
+            return Messages.log.operationFailed((Throwable) exception);
+        } else {
+            return Messages.log.invalidResponse();
+        }
+    }
+
+    static Object unmarshal(final MarshallingConfiguration configuration, final byte[] bytes, final ClassLoader classLoader) throws NamingException {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader oldClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try (Unmarshaller unmarshaller = createUnmarshaller(configuration, new ByteArrayInputStream(bytes))) {
+            return unmarshaller.readObject();
+        } catch (ClassNotFoundException | IOException e) {
+            throw Messages.log.operationFailed(e);
+        } finally {
+            thread.setContextClassLoader(oldClassLoader);
+        }
+    }
+
+    private static byte[] readRemaining(final InputStream is) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[512];
+        int res;
+        while ((res = is.read(buffer)) != -1) {
+            os.write(buffer, 0, res);
+        }
+        return os.toByteArray();
+    }
+
+    private Unmarshaller createUnmarshaller(InputStream is) throws IOException {
+        return createUnmarshaller(configuration, is);
+    }
+
+    private static Unmarshaller createUnmarshaller(MarshallingConfiguration configuration, InputStream is) throws IOException {
         final Unmarshaller unmarshaller = Marshalling.getProvidedMarshallerFactory("river").createUnmarshaller(configuration);
         unmarshaller.start(Marshalling.createByteInput(is));
         return unmarshaller;
     }
 
-    private Marshaller createMarshaller(MessageOutputStream os) throws IOException {
+    private Marshaller createMarshaller(OutputStream os) throws IOException {
         final Marshaller marshaller = Marshalling.getProvidedMarshallerFactory("river").createMarshaller(configuration);
         marshaller.start(Marshalling.createByteOutput(os));
         return marshaller;
@@ -23,21 +23,41 @@
 package org.wildfly.naming.client.remote;
 
 import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.naming.Binding;
 import javax.naming.CommunicationException;
 import javax.naming.CompositeName;
 import javax.naming.Context;
+import javax.naming.InterruptedNamingException;
 import javax.naming.Name;
 import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
 import javax.naming.NamingException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingListener;
 
 import org.jboss.remoting3.Connection;
 import org.jboss.remoting3.Endpoint;
+import org.wildfly.common.Assert;
 import org.wildfly.naming.client.AbstractFederatingContext;
 import org.wildfly.naming.client.CloseableNamingEnumeration;
 import org.wildfly.naming.client._private.Messages;
+import org.wildfly.naming.client.store.ListenerHandle;
 import org.wildfly.naming.client.store.RelativeFederatingContext;
 import org.wildfly.naming.client.util.FastHashtable;
 import org.wildfly.naming.client.util.NamingUtils;
@@ -49,10 +69,11 @@ import org.xnio.OptionMap;
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
-final class RemoteContext extends AbstractFederatingContext {
+final class RemoteContext extends AbstractFederatingContext implements EventContext {
 
     private final RemoteNamingProvider provider;
     private final String scheme;
+    private final ConcurrentHashMap<NamingListener, List<ListenerHandle>> listeners = new ConcurrentHashMap<>();
 
     RemoteContext(final RemoteNamingProvider provider, final String scheme, final Hashtable<String, Object> env) throws CommunicationException {
         super(FastHashtable.of(env));
@@ -61,15 +82,28 @@ final class RemoteContext extends AbstractFederatingContext {
     }
 
     RemoteClientTransport getRemoteTransport() throws NamingException {
+        return getRemoteTransport(provider);
+    }
+
+    private RemoteClientTransport getRemoteTransport(final RemoteNamingProvider provider) throws NamingException {
+        final FastHashtable<String, Object> env = getEnvironment();
+        final long queueTimeout = RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.INVOCATION_QUEUE_TIMEOUT, -1);
+        final long batchWindow = RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.LOOKUP_BATCH_WINDOW, 0);
+        final int batchSize = (int) RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.LOOKUP_BATCH_SIZE, 32);
+        return getSharedTransport(provider).withOptions(queueTimeout < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(queueTimeout), TimeUnit.MICROSECONDS.toNanos(Math.max(0, batchWindow)), batchSize);
+    }
+
+    private static RemoteClientTransport getSharedTransport(final RemoteNamingProvider provider) throws NamingException {
         final Endpoint endpoint = Endpoint.getCurrent();
         if (endpoint == null) {
             throw Messages.log.noRemotingEndpoint();
         }
         try {
             final Connection connection = provider.getConnection();
+            connection.getAttachments().attachIfAbsent(RemoteClientTransport.MAX_OUTSTANDING_INVOCATIONS_KEY, Integer.valueOf(provider.getMaxOutstandingInvocations()));
             final IoFuture<RemoteClientTransport> future = RemoteClientTransport.SERVICE_HANDLE.getClientService(connection, OptionMap.EMPTY);
             try {
-                return future.getInterruptibly();
+                return Futures.getInterruptibly(future);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 future.cancel();
@@ -83,60 +117,403 @@ final class RemoteContext extends AbstractFederatingContext {
         }
     }
 
+    /**
+     * Perform an operation on the remote transport, subject to the provider's circuit breaker.  Idempotent operations
+     * which fail to communicate with the server are retried according to the environment.
+     */
+    private <T> T invoke(final boolean idempotent, final Operation<T> operation) throws NamingException {
+        final CircuitBreaker circuitBreaker = provider.getCircuitBreaker();
+        final int retries = idempotent ? (int) RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.RETRY_COUNT, 0) : 0;
+        for (int attempt = 0;; attempt ++) {
+            circuitBreaker.acquire();
+            try {
+                final T result = operation.run(getRemoteTransport());
+                circuitBreaker.succeeded();
+                return result;
+            } catch (InterruptedNamingException e) {
+                circuitBreaker.released();
+                throw e;
+            } catch (CommunicationException e) {
+                if (isLocalFailure(e)) {
+                    // the request could not be written, for example because an object is not serializable
+                    circuitBreaker.succeeded();
+                    throw e;
+                }
+                circuitBreaker.failed();
+                if (attempt >= retries) {
+                    throw e;
+                }
+            } catch (Throwable t) {
+                // the server was reached, or the failure was local
+                circuitBreaker.succeeded();
+                throw t;
+            }
+            backOff(attempt);
+        }
+    }
+
+    private static boolean isLocalFailure(final CommunicationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ObjectStreamException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backOff(final int attempt) throws NamingException {
+        final long base = RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.RETRY_BACKOFF, 100);
+        // full jitter, so that clients which failed together do not retry together
+        final long delay = ThreadLocalRandom.current().nextLong((base << Math.min(attempt, 16)) + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Messages.log.operationInterrupted();
+        }
+    }
+
+    private Object lookup(final Name name, final boolean preserveLinks) throws NamingException {
+        final long ttl = RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.LOOKUP_CACHE_TTL, 0);
+        if (ttl > 0) {
+            // cache hits are served without contacting the server, even if the circuit breaker is open
+            return cachedLookup(name, preserveLinks, TimeUnit.MILLISECONDS.toNanos(ttl)).getResult(this, name);
+        }
+        if (Boolean.parseBoolean(String.valueOf(getEnvironment().get(RemoteNamingProviderFactory.COALESCE_LOOKUPS)))) {
+            return fetchLookup(name, preserveLinks).getResult(this, name);
+        }
+        return invoke(true, transport -> {
+            final PendingLookup pending = sendLookup(transport, name, preserveLinks);
+            return pending.transport.readLookup(this, name, pending.invocation);
+        });
+    }
+
+    private LookupResponse cachedLookup(final Name name, final boolean preserveLinks, final long ttl) throws NamingException {
+        final FastHashtable<String, Object> env = getEnvironment();
+        final LookupCache cache = provider.getLookupCache();
+        final String key = LookupCache.keyOf(NamingUtils.toCompositeName(name).toString(), preserveLinks);
+        final LookupResponse cached = cache.get(key);
+        if (cached != null) {
+            // an entry loaded from a snapshot ages from when it was loaded, and is checked with the server on first use
+            final long age = cached.getAge(System.nanoTime());
+            if (age < ttl) {
+                if (! cached.isValidated() || age >= ttl - getMillisProperty(env, RemoteNamingProviderFactory.LOOKUP_CACHE_REFRESH_AHEAD)) {
+                    refresh(key, name, preserveLinks, cached);
+                }
+                return cached;
+            }
+            if (age < ttl + getMillisProperty(env, RemoteNamingProviderFactory.LOOKUP_CACHE_STALE_WHILE_REVALIDATE)) {
+                refresh(key, name, preserveLinks, cached);
+                return cached;
+            }
+            try {
+                return fetchAndCache(key, name, preserveLinks);
+            } catch (CommunicationException e) {
+                if (age < ttl + getMillisProperty(env, RemoteNamingProviderFactory.LOOKUP_CACHE_STALE_IF_ERROR)) {
+                    return cached;
+                }
+                // too stale to serve even while the server is unreachable
+                cache.remove(key, cached);
+                throw e;
+            }
+        }
+        return fetchAndCache(key, name, preserveLinks);
+    }
+
+    private LookupResponse fetchAndCache(final String key, final Name name, final boolean preserveLinks) throws NamingException {
+        final LookupResponse response = fetchLookup(name, preserveLinks);
+        final int maxSize = (int) RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.LOOKUP_CACHE_SIZE, 1024);
+        provider.getLookupCache().put(key, response, maxSize);
+        return response;
+    }
+
+    /**
+     * Refresh a cached lookup response in the background, unless it is already being refreshed.  If the refresh fails,
+     * the cached response is kept, except that it is removed if the name no longer exists.
+     */
+    private void refresh(final String key, final Name name, final boolean preserveLinks, final LookupResponse cached) {
+        if (! cached.claimRefresh()) {
+            return;
+        }
+        try {
+            RefreshExecutorHolder.EXECUTOR.execute(() -> {
+                try {
+                    fetchAndCache(key, name, preserveLinks);
+                } catch (NameNotFoundException e) {
+                    provider.getLookupCache().remove(key, cached);
+                } catch (NamingException | RuntimeException e) {
+                    cached.refreshFailed();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // too many refreshes are pending; a later cache hit tries again
+            cached.refreshFailed();
+        }
+    }
+
+    private static long getMillisProperty(final FastHashtable<String, Object> env, final String name) {
+        return TimeUnit.MILLISECONDS.toNanos(RemoteNamingProviderFactory.getLongProperty(env, name, 0));
+    }
+
+    /**
+     * Look up a name, returning the raw response.  If so configured, the response of any identical lookup which is
+     * already in progress on this provider is shared.  Only the lookup which is in progress is subject to the circuit
+     * breaker and to retries; a lookup which shares its response also shares its failure.
+     */
+    private LookupResponse fetchLookup(final Name name, final boolean preserveLinks) throws NamingException {
+        if (! Boolean.parseBoolean(String.valueOf(getEnvironment().get(RemoteNamingProviderFactory.COALESCE_LOOKUPS)))) {
+            return invoke(true, transport -> readLookupResponse(transport, name, preserveLinks));
+        }
+        final ConcurrentHashMap<String, CompletableFuture<LookupResponse>> inFlight = provider.getInFlightLookups();
+        final String key = LookupCache.keyOf(NamingUtils.toCompositeName(name).toString(), preserveLinks);
+        final long timeout = TimeUnit.MILLISECONDS.toNanos(RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.INVOCATION_TIMEOUT, 60000));
+        for (;;) {
+            final CompletableFuture<LookupResponse> future = new CompletableFuture<>();
+            final CompletableFuture<LookupResponse> existing = inFlight.putIfAbsent(key, future);
+            if (existing == null) {
+                try {
+                    final LookupResponse response = invoke(true, transport -> readLookupResponse(transport, name, preserveLinks));
+                    future.complete(response);
+                    return response;
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                    throw t;
+                } finally {
+                    inFlight.remove(key, future);
+                }
+            }
+            try {
+                return existing.get(timeout, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Messages.log.operationInterrupted();
+            } catch (TimeoutException e) {
+                throw Messages.log.invocationTimedOut();
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof InterruptedNamingException) {
+                    // the thread performing the lookup was interrupted, but this one was not
+                    continue;
+                } else if (cause instanceof NamingException) {
+                    throw (NamingException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new UndeclaredThrowableException(cause);
+            }
+        }
+    }
+
+    private LookupResponse readLookupResponse(final RemoteClientTransport transport, final Name name, final boolean preserveLinks) throws NamingException {
+        final PendingLookup pending = sendLookup(transport, name, preserveLinks);
+        return new LookupResponse(pending.transport.getConfiguration(), pending.transport.readLookupBytes(pending.invocation), true);
+    }
+
+    /**
+     * Send a lookup, hedging it to an alternative server if so configured and if the response is slow to arrive.
+     *
+     * @return the pending lookup whose response is to be used, or the only pending lookup if not hedging
+     */
+    private PendingLookup sendLookup(final RemoteClientTransport transport, final Name name, final boolean preserveLinks) throws NamingException {
+        final Object hedgeUrls = getEnvironment().get(RemoteNamingProviderFactory.HEDGE_PROVIDER_URLS);
+        if (hedgeUrls == null) {
+            return new PendingLookup(transport, transport.sendLookup(name, preserveLinks));
+        }
+        final LatencyWindow latencies = provider.getLookupLatencies();
+        final long start = System.nanoTime();
+        final ClientInvocation primary = transport.sendLookup(name, preserveLinks);
+        final CountDownLatch responded = new CountDownLatch(1);
+        primary.whenResponded(responded::countDown);
+        final int percentile = (int) RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.HEDGE_PERCENTILE, 95);
+        final long minDelay = TimeUnit.MILLISECONDS.toNanos(RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.HEDGE_MIN_DELAY, 5));
+        final long delay = Math.max(minDelay, latencies.getPercentile(percentile, minDelay));
+        final long timeout = TimeUnit.MILLISECONDS.toNanos(RemoteNamingProviderFactory.getLongProperty(getEnvironment(), RemoteNamingProviderFactory.INVOCATION_TIMEOUT, 60000));
+        RemoteNamingProvider hedgeProvider = null;
+        RemoteClientTransport secondaryTransport = null;
+        ClientInvocation secondary = null;
+        try {
+            if (! responded.await(delay, TimeUnit.NANOSECONDS)) {
+                // hedge the lookup; if the other server cannot be reached, just keep waiting for the first
+                try {
+                    final String[] urls = hedgeUrls.toString().split(",");
+                    final URI uri = new URI(urls[provider.nextHedgeIndex(urls.length)].trim());
+                    hedgeProvider = RemoteNamingProviderFactory.getManagedProvider(provider.getEndpoint(), uri, provider.getCapturedAuthenticationContext(), getEnvironment());
+                    secondaryTransport = getRemoteTransport(hedgeProvider);
+                    final ClientInvocation hedge = secondary = secondaryTransport.sendLookup(name, preserveLinks);
+                    // a failure from the other server does not end the wait, since the first may yet succeed
+                    hedge.whenResponded(() -> {
+                        if (hedge.hasSuccessfulResponse()) {
+                            responded.countDown();
+                        }
+                    });
+                } catch (NamingException | URISyntaxException ignored) {
+                }
+                if (! responded.await(timeout - (System.nanoTime() - start), TimeUnit.NANOSECONDS)) {
+                    primary.cancel();
+                    if (secondary != null) {
+                        secondary.cancel();
+                    }
+                    throw Messages.log.invocationTimedOut();
+                }
+            }
+            // when the hedge wins this understates the primary latency, which is at least this long
+            latencies.record(System.nanoTime() - start);
+            if (secondary == null || primary.hasResponse() || ! secondary.hasSuccessfulResponse()) {
+                if (secondary != null) {
+                    secondary.cancel();
+                }
+                return new PendingLookup(transport, primary);
+            }
+            primary.cancel();
+            return new PendingLookup(secondaryTransport, secondary);
+        } catch (InterruptedException e) {
+            primary.cancel();
+            if (secondary != null) {
+                secondary.cancel();
+            }
+            Thread.currentThread().interrupt();
+            throw Messages.log.operationInterrupted();
+        } finally {
+            if (hedgeProvider != null) {
+                // the hedge has completed or been cancelled; the transport stays open with the connection
+                hedgeProvider.close();
+            }
+        }
+    }
+
     protected Object lookupNative(final Name name) throws NamingException {
         if (name.isEmpty()) {
             return new RemoteContext(provider, scheme, getEnvironment());
         }
-        return getRemoteTransport().lookup(this, name, false);
+        return lookup(name, false);
     }
 
     protected Object lookupLinkNative(final Name name) throws NamingException {
         if (name.isEmpty()) {
             return new RemoteContext(provider, scheme, getEnvironment());
         }
-        return getRemoteTransport().lookup(this, name, true);
+        return lookup(name, true);
     }
 
     protected void bindNative(final Name name, final Object obj) throws NamingException {
-        getRemoteTransport().bind(name, obj, false);
+        invoke(false, transport -> {
+            transport.bind(name, obj, false);
+            return null;
+        });
+        provider.getLookupCache().invalidate(NamingUtils.toCompositeName(name).toString());
     }
 
     protected void rebindNative(final Name name, final Object obj) throws NamingException {
-        getRemoteTransport().bind(name, obj, true);
+        invoke(true, transport -> {
+            transport.bind(name, obj, true);
+            return null;
+        });
+        provider.getLookupCache().invalidate(NamingUtils.toCompositeName(name).toString());
     }
 
     protected void unbindNative(final Name name) throws NamingException {
-        getRemoteTransport().unbind(name);
+        invoke(true, transport -> {
+            transport.unbind(name);
+            return null;
+        });
+        provider.getLookupCache().invalidate(NamingUtils.toCompositeName(name).toString());
     }
 
     protected void renameNative(final Name oldName, final Name newName) throws NamingException {
-        getRemoteTransport().rename(oldName, newName);
+        invoke(false, transport -> {
+            transport.rename(oldName, newName);
+            return null;
+        });
+        // entries beneath the old name are affected too
+        provider.getLookupCache().clear();
     }
 
     protected CloseableNamingEnumeration<NameClassPair> listNative(final Name name) throws NamingException {
-        return getRemoteTransport().list(name);
+        return invoke(true, transport -> transport.list(name));
     }
 
     protected CloseableNamingEnumeration<Binding> listBindingsNative(final Name name) throws NamingException {
-        return getRemoteTransport().listBindings(name, this);
+        return invoke(true, transport -> transport.listBindings(name, this));
+    }
+
+    protected CloseableNamingEnumeration<NameClassPair> listMatchingNative(final Name name, final String pattern) throws NamingException {
+        return invoke(true, transport -> transport.hasCapability(Protocol.CAP_LIST_MATCHING) ? transport.list(name, pattern) : NamingUtils.filterByName(transport.list(name), pattern));
+    }
+
+    protected CloseableNamingEnumeration<Binding> listBindingsMatchingNative(final Name name, final String pattern) throws NamingException {
+        return invoke(true, transport -> transport.hasCapability(Protocol.CAP_LIST_MATCHING) ? transport.listBindings(name, pattern, this) : NamingUtils.filterByName(transport.listBindings(name, this), pattern));
+    }
+
+    protected CloseableNamingEnumeration<NameClassPair> walkNative(final Name name, final int maxDepth) throws NamingException {
+        final CloseableNamingEnumeration<NameClassPair> result = invoke(true, transport -> transport.hasCapability(Protocol.CAP_WALK) ? transport.walk(name, maxDepth) : null);
+        // an older server is walked one context at a time
+        return result != null ? result : super.walkNative(name, maxDepth);
     }
 
     protected void destroySubcontextNative(final Name name) throws NamingException {
-        getRemoteTransport().destroySubcontext(name);
+        invoke(true, transport -> {
+            transport.destroySubcontext(name);
+            return null;
+        });
+        provider.getLookupCache().clear();
     }
 
     protected Context createSubcontextNative(final Name name) throws NamingException {
         final CompositeName compositeName = NamingUtils.toCompositeName(name);
-        getRemoteTransport().createSubcontext(compositeName);
+        invoke(false, transport -> {
+            transport.createSubcontext(compositeName);
+            return null;
+        });
         return new RelativeFederatingContext(getEnvironment(), this, compositeName);
     }
 
+    public void addNamingListener(final Name target, final int scope, final NamingListener l) throws NamingException {
+        Assert.checkNotNullParam("target", target);
+        Assert.checkNotNullParam("l", l);
+        final ListenerHandle handle = invoke(false, transport -> transport.addListener(this, target, scope, l));
+        listeners.computeIfAbsent(l, ignored -> new CopyOnWriteArrayList<>()).add(handle);
+    }
+
+    public void addNamingListener(final String target, final int scope, final NamingListener l) throws NamingException {
+        Assert.checkNotNullParam("target", target);
+        addNamingListener(new CompositeName(target), scope, l);
+    }
+
+    public void removeNamingListener(final NamingListener l) {
+        Assert.checkNotNullParam("l", l);
+        final List<ListenerHandle> handles = listeners.remove(l);
+        if (handles != null) {
+            handles.forEach(ListenerHandle::close);
+        }
+    }
+
+    public boolean targetMustExist() {
+        return false;
+    }
+
     public void close() {
-        // no operation
+        // remove any listeners registered through this context
+        listeners.keySet().forEach(this::removeNamingListener);
     }
 
     public String getNameInNamespace() throws NamingException {
         final String scheme = this.scheme;
         return scheme == null || scheme.isEmpty() ? "" : scheme + ":";
     }
+
+    interface Operation<T> {
+        T run(RemoteClientTransport transport) throws NamingException;
+    }
+
+    static final class PendingLookup {
+        final RemoteClientTransport transport;
+        final ClientInvocation invocation;
+
+        PendingLookup(final RemoteClientTransport transport, final ClientInvocation invocation) {
+            this.transport = transport;
+            this.invocation = invocation;
+        }
+    }
 }
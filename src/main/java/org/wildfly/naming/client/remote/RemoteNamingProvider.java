@@ -24,17 +24,24 @@ package org.wildfly.naming.client.remote;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 import javax.naming.NamingException;
 
 import org.jboss.remoting3.Connection;
 import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.NotOpenException;
 import org.wildfly.naming.client.NamingCloseable;
 import org.wildfly.naming.client.NamingProvider;
 import org.wildfly.naming.client._private.Messages;
 import org.wildfly.naming.client.util.FastHashtable;
 import org.wildfly.security.auth.client.AuthenticationContext;
+import org.xnio.FailedIoFuture;
 import org.xnio.FinishedIoFuture;
 import org.xnio.IoFuture;
 
@@ -48,19 +55,39 @@ public final class RemoteNamingProvider implements NamingProvider {
     private final Endpoint endpoint;
     private final AuthenticationContext capturedAuthenticationContext;
     private final Supplier<IoFuture<Connection>> connectionFactory;
+    private final ConnectionSource connectionSource;
+    private final ReentrantLock heldLock = new ReentrantLock();
+    // protected by heldLock
+    private HeldConnection heldConnection;
+    private boolean heldConnectionClosed;
+    private boolean closed;
     private final NamingCloseable closeable;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxOutstandingInvocations;
+    private final LatencyWindow lookupLatencies;
+    private final AtomicInteger nextHedge;
+    private final ConcurrentHashMap<String, CompletableFuture<LookupResponse>> inFlightLookups;
+    private final LookupCache lookupCache;
 
-    RemoteNamingProvider(final Endpoint endpoint, final URI providerUri, final AuthenticationContext context, final FastHashtable<String, Object> env) {
+    RemoteNamingProvider(final Endpoint endpoint, final URI providerUri, final AuthenticationContext context, final FastHashtable<String, Object> env, final NamingCloseable closeable) {
         this.endpoint = endpoint;
         capturedAuthenticationContext = context;
         connectionFactory = () -> endpoint.getConnection(providerUri);
-        closeable = NamingCloseable.NULL;
+        connectionSource = null;
+        this.closeable = closeable;
+        circuitBreaker = createCircuitBreaker(env);
+        maxOutstandingInvocations = (int) RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.MAX_OUTSTANDING_INVOCATIONS, RemoteClientTransport.DEFAULT_MAX_OUTSTANDING_INVOCATIONS);
+        lookupLatencies = new LatencyWindow();
+        nextHedge = new AtomicInteger();
+        inFlightLookups = new ConcurrentHashMap<>();
+        lookupCache = new LookupCache();
     }
 
     RemoteNamingProvider(final Connection connection, final AuthenticationContext context, final FastHashtable<String, Object> env) {
         this.endpoint = connection.getEndpoint();
         capturedAuthenticationContext = context;
         connectionFactory = () -> new FinishedIoFuture<>(connection);
+        connectionSource = null;
         closeable = () -> {
             try {
                 connection.close();
@@ -68,6 +95,76 @@ public final class RemoteNamingProvider implements NamingProvider {
                 throw Messages.log.namingProviderCloseFailed(e);
             }
         };
+        circuitBreaker = createCircuitBreaker(env);
+        maxOutstandingInvocations = (int) RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.MAX_OUTSTANDING_INVOCATIONS, RemoteClientTransport.DEFAULT_MAX_OUTSTANDING_INVOCATIONS);
+        lookupLatencies = new LatencyWindow();
+        nextHedge = new AtomicInteger();
+        inFlightLookups = new ConcurrentHashMap<>();
+        lookupCache = new LookupCache();
+    }
+
+    /**
+     * Construct a new instance which holds a connection of its own instead of sharing the endpoint's connection.  If
+     * the held connection closes, it is released and another is opened when the connection is next requested, so that
+     * a provider which outlives its connection, for example by being cached by a root context, can still be used.
+     *
+     * @param endpoint the endpoint
+     * @param context the captured authentication context
+     * @param env the environment
+     * @param connectionSource the source of the held connections
+     * @throws IOException if the first connection could not be opened
+     */
+    RemoteNamingProvider(final Endpoint endpoint, final AuthenticationContext context, final FastHashtable<String, Object> env, final ConnectionSource connectionSource) throws IOException {
+        this.endpoint = endpoint;
+        capturedAuthenticationContext = context;
+        connectionFactory = () -> {
+            try {
+                return new FinishedIoFuture<>(getHeldConnection());
+            } catch (IOException e) {
+                return new FailedIoFuture<>(e);
+            }
+        };
+        this.connectionSource = connectionSource;
+        closeable = this::releaseHeldConnection;
+        circuitBreaker = createCircuitBreaker(env);
+        maxOutstandingInvocations = (int) RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.MAX_OUTSTANDING_INVOCATIONS, RemoteClientTransport.DEFAULT_MAX_OUTSTANDING_INVOCATIONS);
+        lookupLatencies = new LatencyWindow();
+        nextHedge = new AtomicInteger();
+        inFlightLookups = new ConcurrentHashMap<>();
+        lookupCache = new LookupCache();
+        heldLock.lock();
+        try {
+            openHeldConnection();
+        } finally {
+            heldLock.unlock();
+        }
+    }
+
+    /**
+     * Construct a new reference to a managed provider.  The reference shares the connection, the circuit breaker and
+     * the caches of the provider, and closing it runs the given action instead of closing the provider.
+     *
+     * @param provider the provider
+     * @param closeable the action to run when the reference is closed
+     */
+    RemoteNamingProvider(final RemoteNamingProvider provider, final NamingCloseable closeable) {
+        endpoint = provider.endpoint;
+        capturedAuthenticationContext = provider.capturedAuthenticationContext;
+        connectionFactory = provider.connectionFactory;
+        connectionSource = null;
+        this.closeable = closeable;
+        circuitBreaker = provider.circuitBreaker;
+        maxOutstandingInvocations = provider.maxOutstandingInvocations;
+        lookupLatencies = provider.lookupLatencies;
+        nextHedge = provider.nextHedge;
+        inFlightLookups = provider.inFlightLookups;
+        lookupCache = provider.lookupCache;
+    }
+
+    private static CircuitBreaker createCircuitBreaker(final FastHashtable<String, Object> env) {
+        final int threshold = (int) RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.CIRCUIT_BREAKER_THRESHOLD, 5);
+        final long openTime = RemoteNamingProviderFactory.getLongProperty(env, RemoteNamingProviderFactory.CIRCUIT_BREAKER_OPEN_TIME, 5000);
+        return new CircuitBreaker(threshold, openTime, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -88,7 +185,7 @@ public final class RemoteNamingProvider implements NamingProvider {
      * @throws IOException if the connection was not established and establishment failed
      */
     public Connection getConnection() throws IOException {
-        return connectionFactory.get().get();
+        return Futures.get(connectionFactory.get());
     }
 
     /**
@@ -100,7 +197,105 @@ public final class RemoteNamingProvider implements NamingProvider {
         return capturedAuthenticationContext;
     }
 
+    int getMaxOutstandingInvocations() {
+        return maxOutstandingInvocations;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    LatencyWindow getLookupLatencies() {
+        return lookupLatencies;
+    }
+
+    ConcurrentHashMap<String, CompletableFuture<LookupResponse>> getInFlightLookups() {
+        return inFlightLookups;
+    }
+
+    LookupCache getLookupCache() {
+        return lookupCache;
+    }
+
+    int nextHedgeIndex(final int count) {
+        return (nextHedge.getAndIncrement() & Integer.MAX_VALUE) % count;
+    }
+
     public void close() throws NamingException {
         closeable.close();
     }
+
+    private Connection getHeldConnection() throws IOException {
+        heldLock.lock();
+        try {
+            final HeldConnection held = heldConnection;
+            if (held != null) {
+                if (! heldConnectionClosed || closed) {
+                    return held.getConnection();
+                }
+                heldConnection = null;
+                try {
+                    held.release();
+                } catch (NamingException ignored) {
+                    // the connection is closed already
+                }
+            } else if (closed) {
+                throw new NotOpenException("Naming provider is closed");
+            }
+            return openHeldConnection().getConnection();
+        } finally {
+            heldLock.unlock();
+        }
+    }
+
+    private HeldConnection openHeldConnection() throws IOException {
+        assert heldLock.isHeldByCurrentThread();
+        final HeldConnection held = connectionSource.open(this);
+        heldConnection = held;
+        heldConnectionClosed = false;
+        held.getConnection().addCloseHandler((connection, ignored) -> {
+            heldLock.lock();
+            try {
+                if (heldConnection == held) {
+                    heldConnectionClosed = true;
+                }
+            } finally {
+                heldLock.unlock();
+            }
+        });
+        return held;
+    }
+
+    private void releaseHeldConnection() throws NamingException {
+        final HeldConnection held;
+        heldLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            held = heldConnection;
+        } finally {
+            heldLock.unlock();
+        }
+        if (held != null) {
+            held.release();
+        }
+    }
+
+    /**
+     * A connection which is held by a single provider until the provider releases it.
+     */
+    interface HeldConnection {
+        Connection getConnection();
+
+        void release() throws NamingException;
+    }
+
+    /**
+     * A source of the connections which are held by a provider.
+     */
+    interface ConnectionSource {
+        HeldConnection open(RemoteNamingProvider provider) throws IOException;
+    }
 }
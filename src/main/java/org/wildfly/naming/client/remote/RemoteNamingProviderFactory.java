@@ -24,7 +24,7 @@ package org.wildfly.naming.client.remote;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Paths;
 
 import javax.naming.NamingException;
 
@@ -32,6 +32,7 @@ import org.jboss.remoting3.Attachments;
 import org.jboss.remoting3.Connection;
 import org.jboss.remoting3.Endpoint;
 import org.kohsuke.MetaInfServices;
+import org.wildfly.naming.client.NamingCloseable;
 import org.wildfly.naming.client.NamingProvider;
 import org.wildfly.naming.client.NamingProviderFactory;
 import org.wildfly.naming.client._private.Messages;
@@ -62,10 +63,212 @@ public final class RemoteNamingProviderFactory implements NamingProviderFactory
      */
     public static final String USE_SEPARATE_CONNECTION = "org.wildfly.naming.client.remote.use-separate-connection";
 
+    /**
+     * An environment attribute indicating that the connection of this initial context should be taken from a pool of
+     * authenticated connections instead of being a managed or separate connection.  Pooled connections are keyed by
+     * destination and by the authentication configuration that the captured authentication context selects for it, so
+     * that initial contexts with different identities do not share a connection, while those with the same identity do.
+     * Closing the initial context returns its connection to the pool.  This attribute takes precedence over
+     * {@link #USE_SEPARATE_CONNECTION}.
+     */
+    public static final String USE_CONNECTION_POOL = "org.wildfly.naming.client.remote.use-connection-pool";
+
+    /**
+     * An environment attribute giving the maximum number of pooled connections to one destination for one identity.
+     * When every such connection is in use, further initial contexts share the least used connection.  The default is
+     * 4.
+     */
+    public static final String CONNECTION_POOL_MAX_PER_KEY = "org.wildfly.naming.client.remote.connection-pool.max-per-key";
+
+    /**
+     * An environment attribute giving the time in milliseconds after which a pooled connection which is not used by any
+     * initial context is closed.  The default is 60000.
+     */
+    public static final String CONNECTION_POOL_IDLE_TIMEOUT = "org.wildfly.naming.client.remote.connection-pool.idle-timeout";
+
+    /**
+     * An environment attribute giving the maximum number of outstanding invocations of each naming channel, not
+     * counting listener registrations.  Further invocations wait for an outstanding one to complete, as given by the
+     * {@linkplain #INVOCATION_QUEUE_TIMEOUT invocation queue timeout}.  The limit is applied when a connection opens its
+     * naming channel, so the first naming provider to use a shared connection determines it.  The default is given by
+     * the system property of the same name, or is 1024; 0 means that the number is not limited.
+     * <p>
+     * An invocation which the client cancels, because the calling thread was interrupted, because it lost a hedged
+     * lookup, or because its walk enumeration was closed early, keeps its place until the server answers it, since the
+     * protocol cannot cancel a request which the server has received.
+     */
+    public static final String MAX_OUTSTANDING_INVOCATIONS = "org.wildfly.naming.client.remote.max-outstanding-invocations";
+
+    /**
+     * An environment attribute giving the time in milliseconds that an operation waits to be sent when the connection
+     * already has the {@linkplain #MAX_OUTSTANDING_INVOCATIONS maximum number of outstanding invocations}.  Waiting
+     * operations are sent in arrival order.  A value of 0 makes such operations fail immediately with a
+     * {@link javax.naming.ServiceUnavailableException}, as do operations which wait for longer than the given time.  By
+     * default, operations wait without a time limit.
+     */
+    public static final String INVOCATION_QUEUE_TIMEOUT = "org.wildfly.naming.client.remote.invocation-queue-timeout";
+
+    /**
+     * An environment attribute giving the time in microseconds for which concurrent lookups on one connection are
+     * gathered, to be sent to the server as a single message.  The first lookup of a batch is delayed by up to this
+     * time; the others are sent when the batch is.  Batching requires a server which supports it; otherwise, and by
+     * default, each lookup is sent immediately.
+     */
+    public static final String LOOKUP_BATCH_WINDOW = "org.wildfly.naming.client.remote.lookup-batch.window";
+
+    /**
+     * An environment attribute giving the number of lookups at which a batch is sent without waiting for the rest of
+     * its {@linkplain #LOOKUP_BATCH_WINDOW window}.  The default is 32.
+     */
+    public static final String LOOKUP_BATCH_SIZE = "org.wildfly.naming.client.remote.lookup-batch.size";
+
+    /**
+     * An environment attribute giving the time in milliseconds after which a managed provider which is not used by any
+     * open initial context is discarded, along with its lookup cache and captured authentication context.  The
+     * connection of a discarded provider remains managed by the endpoint.  The default is 300000.
+     */
+    public static final String PROVIDER_IDLE_TIMEOUT = "org.wildfly.naming.client.remote.provider.idle-timeout";
+
+    /**
+     * An environment attribute giving the number of managed providers of an endpoint beyond which the least recently
+     * used providers which are not used by any open initial context are discarded.  The default is 256.
+     */
+    public static final String PROVIDER_MAX_COUNT = "org.wildfly.naming.client.remote.provider.max-count";
+
+    /**
+     * An environment attribute indicating that looked up objects should not be unmarshalled until they are used.  When
+     * set to {@code true}, a lookup of an object binding returns a {@link LazyObject} which holds the raw object data,
+     * and which unmarshals the object on its first {@link LazyObject#get() get()}.  This avoids loading classes for and
+     * deserializing objects which are looked up but never used.  Contexts are not affected by this setting.
+     */
+    public static final String LAZY_LOOKUP = "org.wildfly.naming.client.remote.lazy-lookup";
+
+    /**
+     * An environment attribute giving the number of times that an idempotent operation which failed to communicate
+     * with the server is retried.  Retries are delayed by a random amount of up to the {@linkplain #RETRY_BACKOFF
+     * backoff time}, doubling with each attempt.  The default is 0, meaning that operations are not retried.
+     */
+    public static final String RETRY_COUNT = "org.wildfly.naming.client.remote.retry-count";
+
+    /**
+     * An environment attribute giving the base backoff time for {@linkplain #RETRY_COUNT retries} in milliseconds.  The
+     * default is 100.
+     */
+    public static final String RETRY_BACKOFF = "org.wildfly.naming.client.remote.retry-backoff";
+
+    /**
+     * An environment attribute giving the number of consecutive communication failures after which operations on a
+     * naming provider fail immediately, without contacting the server, until the {@linkplain #CIRCUIT_BREAKER_OPEN_TIME
+     * open time} has elapsed.  A value of 0 disables this behavior.  The default is 5.
+     * <p>
+     * Providers are shared between contexts using the same managed connection, so this attribute is taken from the
+     * environment of the first context to use the provider.
+     */
+    public static final String CIRCUIT_BREAKER_THRESHOLD = "org.wildfly.naming.client.remote.circuit-breaker.threshold";
+
+    /**
+     * An environment attribute giving the time in milliseconds for which operations fail immediately once the
+     * {@linkplain #CIRCUIT_BREAKER_THRESHOLD failure threshold} is reached, before a single trial operation is allowed
+     * through to the server.  The default is 5000.
+     */
+    public static final String CIRCUIT_BREAKER_OPEN_TIME = "org.wildfly.naming.client.remote.circuit-breaker.open-time";
+
+    /**
+     * An environment attribute indicating that concurrent lookups of the same name through the same naming provider
+     * should share a single request to the server.  When set to {@code true}, a lookup which finds an identical lookup
+     * already in progress waits for that lookup's response instead of sending its own; each caller still receives its
+     * own unmarshalled copy of the object, using its own context class loader.
+     */
+    public static final String COALESCE_LOOKUPS = "org.wildfly.naming.client.remote.coalesce-lookups";
+
+    /**
+     * An environment attribute giving the time in milliseconds for which the results of lookups are cached by the
+     * naming provider.  The cache holds the marshalled objects, so that each caller still receives its own copy.  Binding
+     * operations through the provider invalidate the affected names.  The default is 0, meaning that lookups are not
+     * cached.
+     */
+    public static final String LOOKUP_CACHE_TTL = "org.wildfly.naming.client.remote.lookup-cache.ttl";
+
+    /**
+     * An environment attribute giving the maximum number of {@linkplain #LOOKUP_CACHE_TTL cached} lookup results of a
+     * naming provider.  The default is 1024.
+     */
+    public static final String LOOKUP_CACHE_SIZE = "org.wildfly.naming.client.remote.lookup-cache.size";
+
+    /**
+     * An environment attribute giving the time in milliseconds before a {@linkplain #LOOKUP_CACHE_TTL cached} lookup
+     * result expires during which a hit on the entry refreshes it in the background, so that frequently used entries
+     * never expire.  The default is 0.
+     */
+    public static final String LOOKUP_CACHE_REFRESH_AHEAD = "org.wildfly.naming.client.remote.lookup-cache.refresh-ahead";
+
+    /**
+     * An environment attribute giving the time in milliseconds after a {@linkplain #LOOKUP_CACHE_TTL cached} lookup
+     * result expires during which it is still returned, while it is refreshed in the background.  The default is 0.
+     */
+    public static final String LOOKUP_CACHE_STALE_WHILE_REVALIDATE = "org.wildfly.naming.client.remote.lookup-cache.stale-while-revalidate";
+
+    /**
+     * An environment attribute giving the time in milliseconds after a {@linkplain #LOOKUP_CACHE_TTL cached} lookup
+     * result expires during which it is still returned if it cannot be refreshed because the server cannot be reached.
+     * The default is 0.
+     */
+    public static final String LOOKUP_CACHE_STALE_IF_ERROR = "org.wildfly.naming.client.remote.lookup-cache.stale-if-error";
+
+    /**
+     * An environment attribute giving the path of a snapshot file of the {@linkplain #LOOKUP_CACHE_TTL lookup caches} of
+     * managed naming providers.  The snapshot is read when the first naming provider is created, and the entries of
+     * each provider are used to answer its lookups at once; these entries are refreshed from the server in the
+     * background when first used.  A loaded entry expires like one received when it was loaded, so that it is no longer
+     * returned once the {@linkplain #LOOKUP_CACHE_STALE_IF_ERROR stale-if-error} time has passed without a refresh.
+     * The snapshot is written when the process exits, and at the {@linkplain #SNAPSHOT_INTERVAL snapshot interval}.
+     * Lookup caching must be enabled for the snapshot to be used.
+     */
+    public static final String SNAPSHOT_FILE = "org.wildfly.naming.client.remote.snapshot.file";
+
+    /**
+     * An environment attribute giving the interval in milliseconds at which the {@linkplain #SNAPSHOT_FILE snapshot
+     * file} is written.  The default is 0, meaning that it is written only when the process exits.
+     */
+    public static final String SNAPSHOT_INTERVAL = "org.wildfly.naming.client.remote.snapshot.interval";
+
+    /**
+     * An environment attribute giving a comma-separated list of provider URLs of further servers to which lookups may
+     * be hedged.  A lookup which has not completed within the {@linkplain #HEDGE_PERCENTILE hedge delay} is sent to the
+     * next of these servers in turn as well.  The first response from the primary server, or the first successful
+     * response from the other server, is used; the other invocation is cancelled.  Only lookups are hedged.  The
+     * servers should serve identical name spaces.
+     */
+    public static final String HEDGE_PROVIDER_URLS = "org.wildfly.naming.client.remote.hedge.provider-urls";
+
+    /**
+     * An environment attribute giving the percentile of recent lookup latencies to the primary server after which a
+     * lookup is {@linkplain #HEDGE_PROVIDER_URLS hedged}.  The default is 95, so that about one lookup in twenty is
+     * hedged.
+     */
+    public static final String HEDGE_PERCENTILE = "org.wildfly.naming.client.remote.hedge.percentile";
+
+    /**
+     * An environment attribute giving the hedge delay in milliseconds which is used until enough lookup latencies have
+     * been recorded to compute the {@linkplain #HEDGE_PERCENTILE percentile}, and which is also the lower bound of the
+     * delay.  The default is 5.
+     */
+    public static final String HEDGE_MIN_DELAY = "org.wildfly.naming.client.remote.hedge.min-delay";
+
+    /**
+     * An environment attribute giving the time in milliseconds that a {@linkplain #HEDGE_PROVIDER_URLS hedged} lookup
+     * waits for a response, measured from when it was first sent, and that a {@linkplain #COALESCE_LOOKUPS coalesced}
+     * lookup waits for the identical lookup in progress.  A lookup which is not answered in time fails with a
+     * {@link javax.naming.CommunicationException}.  The default is 60000.
+     */
+    public static final String INVOCATION_TIMEOUT = "org.wildfly.naming.client.remote.invocation-timeout";
+
     static final Attachments.Key<RemoteNamingProvider> PROVIDER_KEY = new Attachments.Key<>(RemoteNamingProvider.class);
 
     private static final Attachments.Key<ProviderMap> PROVIDER_MAP_KEY = new Attachments.Key<>(ProviderMap.class);
 
+    private static final Attachments.Key<ConnectionPool> CONNECTION_POOL_KEY = new Attachments.Key<>(ConnectionPool.class);
+
     public boolean supportsUriScheme(final String providerScheme) {
         final Endpoint endpoint = Endpoint.getCurrent();
         return endpoint != null && endpoint.isValidUriScheme(providerScheme);
@@ -82,35 +285,93 @@ public final class RemoteNamingProviderFactory implements NamingProviderFactory
         } else {
             context = AuthenticationContext.captureCurrent();
         }
-        if (useSeparateConnection) {
-            // create a brand new connection - if there is authentication info in the env, use it
-            final Connection connection;
+        if (Boolean.parseBoolean(String.valueOf(env.get(USE_CONNECTION_POOL)))) {
+            final ConnectionPool pool = getConnectionPool(endpoint);
+            final int maxPerKey = (int) getLongProperty(env, CONNECTION_POOL_MAX_PER_KEY, 4);
+            final long idleTimeout = getLongProperty(env, CONNECTION_POOL_IDLE_TIMEOUT, 60000);
             try {
-                connection = endpoint.connect(providerUri, OptionMap.EMPTY, context).get();
+                // a lease whose connection closes is replaced by a new lease
+                return new RemoteNamingProvider(endpoint, context, env, provider -> pool.acquire(providerUri, context, maxPerKey, idleTimeout));
+            } catch (IOException e) {
+                throw Messages.log.connectFailed(e);
+            }
+        } else if (useSeparateConnection) {
+            try {
+                // create a brand new connection - if there is authentication info in the env, use it; reconnect likewise
+                return new RemoteNamingProvider(endpoint, context, env, provider -> {
+                    final Connection connection = Futures.get(endpoint.connect(providerUri, OptionMap.EMPTY, context));
+                    connection.getAttachments().attach(PROVIDER_KEY, provider);
+                    return new RemoteNamingProvider.HeldConnection() {
+                        public Connection getConnection() {
+                            return connection;
+                        }
+
+                        public void release() throws NamingException {
+                            try {
+                                connection.close();
+                            } catch (IOException e) {
+                                throw Messages.log.namingProviderCloseFailed(e);
+                            }
+                        }
+                    };
+                });
             } catch (IOException e) {
                 throw Messages.log.connectFailed(e);
             }
-            final RemoteNamingProvider provider = new RemoteNamingProvider(connection, context, env);
-            connection.getAttachments().attach(PROVIDER_KEY, provider);
-            return provider;
         } else {
-            final Attachments attachments = endpoint.getAttachments();
-            ProviderMap map = attachments.getAttachment(PROVIDER_MAP_KEY);
-            if (map == null) {
-                ProviderMap appearing = attachments.attachIfAbsent(PROVIDER_MAP_KEY, map = new ProviderMap());
-                if (appearing != null) {
-                    map = appearing;
-                }
+            return getManagedProvider(endpoint, providerUri, context, env);
+        }
+    }
+
+    /**
+     * Get the managed provider for a URI and acquire a reference to it, which is released by closing the provider.
+     */
+    static RemoteNamingProvider getManagedProvider(final Endpoint endpoint, final URI providerUri, final AuthenticationContext context, final FastHashtable<String, Object> env) {
+        final Attachments attachments = endpoint.getAttachments();
+        ProviderMap map = attachments.getAttachment(PROVIDER_MAP_KEY);
+        if (map == null) {
+            ProviderMap appearing = attachments.attachIfAbsent(PROVIDER_MAP_KEY, map = new ProviderMap());
+            if (appearing != null) {
+                map = appearing;
             }
-            final URIKey key = new URIKey(providerUri.getScheme(), providerUri.getUserInfo(), providerUri.getHost(), providerUri.getPort());
-            RemoteNamingProvider provider = map.get(key);
-            if (provider == null) {
-                RemoteNamingProvider appearing = map.putIfAbsent(key, provider = new RemoteNamingProvider(endpoint, providerUri, context, env));
-                if (appearing != null) {
-                    provider = appearing;
-                }
+        }
+        final URIKey key = new URIKey(providerUri.getScheme(), providerUri.getUserInfo(), providerUri.getHost(), providerUri.getPort());
+        return map.acquire(key, entry -> {
+            final RemoteNamingProvider provider = new RemoteNamingProvider(endpoint, providerUri, context, env, NamingCloseable.NULL);
+            final Object snapshotFile = env.get(SNAPSHOT_FILE);
+            if (snapshotFile != null) {
+                final LookupSnapshot snapshot = LookupSnapshot.forFile(Paths.get(snapshotFile.toString()), getLongProperty(env, SNAPSHOT_INTERVAL, 0));
+                snapshot.attach(key.toString(), provider, (int) getLongProperty(env, LOOKUP_CACHE_SIZE, 1024));
+                entry.setOnEviction(() -> snapshot.detach(key.toString(), provider));
             }
             return provider;
+        }, getLongProperty(env, PROVIDER_IDLE_TIMEOUT, 300000), (int) getLongProperty(env, PROVIDER_MAX_COUNT, 256));
+    }
+
+    static ProviderMap getProviderMap(final Endpoint endpoint) {
+        return endpoint.getAttachments().getAttachment(PROVIDER_MAP_KEY);
+    }
+
+    static ConnectionPool getConnectionPool(final Endpoint endpoint) {
+        final Attachments attachments = endpoint.getAttachments();
+        ConnectionPool pool = attachments.getAttachment(CONNECTION_POOL_KEY);
+        if (pool == null) {
+            ConnectionPool appearing = attachments.attachIfAbsent(CONNECTION_POOL_KEY, pool = new ConnectionPool(endpoint));
+            if (appearing != null) {
+                pool = appearing;
+            }
+        }
+        return pool;
+    }
+
+    static long getLongProperty(final FastHashtable<String, Object> env, final String name, final long defaultValue) {
+        final Object value = env.get(name);
+        if (value == null) {
+            return defaultValue;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else {
+            return Long.parseLong(value.toString().trim());
         }
     }
 
@@ -140,9 +401,9 @@ public final class RemoteNamingProviderFactory implements NamingProviderFactory
         public int hashCode() {
             return hashCode;
         }
-    }
 
-    @SuppressWarnings("serial")
-    static final class ProviderMap extends ConcurrentHashMap<URIKey, RemoteNamingProvider> {
+        public String toString() {
+            return scheme + "://" + (userInfo.isEmpty() ? "" : userInfo + "@") + host + ":" + port;
+        }
     }
 }
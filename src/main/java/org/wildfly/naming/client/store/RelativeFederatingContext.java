@@ -25,7 +25,6 @@ package org.wildfly.naming.client.store;
 import javax.naming.Binding;
 import javax.naming.CompositeName;
 import javax.naming.Context;
-import javax.naming.InvalidNameException;
 import javax.naming.Name;
 import javax.naming.NameClassPair;
 import javax.naming.NameParser;
@@ -86,6 +85,18 @@ public class RelativeFederatingContext extends AbstractFederatingContext {
         return rootContext.listBindings(getAbsoluteName(name));
     }
 
+    protected CloseableNamingEnumeration<NameClassPair> listMatchingNative(final Name name, final String pattern) throws NamingException {
+        return rootContext.listMatching(getAbsoluteName(name), pattern);
+    }
+
+    protected CloseableNamingEnumeration<Binding> listBindingsMatchingNative(final Name name, final String pattern) throws NamingException {
+        return rootContext.listBindingsMatching(getAbsoluteName(name), pattern);
+    }
+
+    protected CloseableNamingEnumeration<NameClassPair> walkNative(final Name name, final int maxDepth) throws NamingException {
+        return rootContext.walk(getAbsoluteName(name), maxDepth);
+    }
+
     protected void destroySubcontextNative(final Name name) throws NamingException {
         rootContext.destroySubcontext(getAbsoluteName(name));
     }
@@ -109,13 +120,25 @@ public class RelativeFederatingContext extends AbstractFederatingContext {
         return rootContext.getNativeNameParser();
     }
 
-    private CompositeName getAbsoluteName(final Name suffix) throws InvalidNameException {
-        final CompositeName compositeName = (CompositeName) prefix.clone();
+    private Name getAbsoluteName(final Name suffix) throws NamingException {
+        // produce a native name, so that the root context does not resolve the prefix through another relative context
+        final NameParser parser = rootContext.getNativeNameParser();
+        final Name name = parser.parse("");
+        addComponents(parser, name, prefix);
         if (suffix instanceof CompositeName) {
-            compositeName.addAll(suffix);
+            addComponents(parser, name, suffix);
         } else {
-            compositeName.add(suffix.toString());
+            name.addAll(suffix);
+        }
+        return name;
+    }
+
+    private static void addComponents(final NameParser parser, final Name name, final Name compositeName) throws NamingException {
+        for (int i = 0; i < compositeName.size(); i ++) {
+            final Name parsed = parser.parse(compositeName.get(i));
+            // make sure empty segments are preserved
+            if (parsed.isEmpty()) parsed.add("");
+            name.addAll(parsed);
         }
-        return compositeName;
     }
 }
@@ -50,13 +50,42 @@ public final class EnvironmentUtils {
 
     /**
      * Get the security credential, if any.  If an entry is present but not recognized, an empty credential set is
-     * returned.
+     * returned.  For a {@link FastHashtable}, the parsed credentials are retained until the raw credential entry is
+     * replaced or {@linkplain #environmentChanged changed}.
      *
      * @param env the environment (must not be {@code null})
      * @return the security credentials, or {@code null} if none was present
      */
     public static IdentityCredentials getSecurityCredentials(Hashtable<String, ?> env) {
         final Object rawCredential = env.get(Context.SECURITY_CREDENTIALS);
+        if (env instanceof FastHashtable) {
+            final FastHashtable<String, ?> fastHashtable = (FastHashtable<String, ?>) env;
+            final Object parsed = fastHashtable.getParsed();
+            if (parsed instanceof ParsedCredentials && ((ParsedCredentials) parsed).rawCredential == rawCredential) {
+                return ((ParsedCredentials) parsed).credentials;
+            }
+            final IdentityCredentials credentials = parseSecurityCredentials(rawCredential);
+            fastHashtable.setParsed(new ParsedCredentials(rawCredential, credentials));
+            return credentials;
+        }
+        return parseSecurityCredentials(rawCredential);
+    }
+
+    /**
+     * Indicate that an environment property was added, replaced or removed, discarding any values parsed from it.
+     * Modifications which replace a property value are detected anyway; this method is needed when a value is modified
+     * in place, for example when the characters of a {@code char[]} credential are changed.
+     *
+     * @param env the environment (must not be {@code null})
+     * @param propName the name of the property which was changed
+     */
+    public static void environmentChanged(Hashtable<String, ?> env, String propName) {
+        if (env instanceof FastHashtable && Context.SECURITY_CREDENTIALS.equals(propName)) {
+            ((FastHashtable<String, ?>) env).setParsed(null);
+        }
+    }
+
+    private static IdentityCredentials parseSecurityCredentials(Object rawCredential) {
         if (rawCredential == null) {
             return null;
         } else if (rawCredential instanceof Collection<?>) {
@@ -76,6 +105,16 @@ public final class EnvironmentUtils {
         }
     }
 
+    static final class ParsedCredentials {
+        final Object rawCredential;
+        final IdentityCredentials credentials;
+
+        ParsedCredentials(final Object rawCredential, final IdentityCredentials credentials) {
+            this.rawCredential = rawCredential;
+            this.credentials = credentials;
+        }
+    }
+
     private static IdentityCredentials getSingleCredential(Object rawCredential) {
         if (rawCredential == null) {
             return IdentityCredentials.NONE;
@@ -22,93 +22,200 @@
 
 package org.wildfly.naming.client.util;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
  * A hashtable that is implemented in terms of a fast concurrent map instead of a slow synchronized hash table.
+ * <p>
+ * Small tables are held as an {@link ImmutableArrayMap} which is replaced on every modification, so that copying a
+ * table shares its contents instead of duplicating them.  A table is converted to a concurrent map once it grows past
+ * {@link #MAX_COMPACT_SIZE} entries, or when one of the live views or compute methods of {@code ConcurrentHashMap} is
+ * used.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public class FastHashtable<K, V> extends Hashtable<K, V> {
     private static final long serialVersionUID = 85183000443454665L;
 
-    private final ConcurrentHashMap<K, V> backingMap;
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("backingMap", ConcurrentHashMap.class)
+    };
+
+    static final int MAX_COMPACT_SIZE = 16;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<FastHashtable, Object> stateUpdater = AtomicReferenceFieldUpdater.newUpdater(FastHashtable.class, Object.class, "state");
+
+    /**
+     * Either an {@link ImmutableArrayMap} or a {@link ConcurrentHashMap}; once the latter, never changed again.
+     */
+    private transient volatile Object state;
+
+    /**
+     * Values derived from this table by {@link EnvironmentUtils}.
+     */
+    private transient volatile Object parsed;
 
     public FastHashtable(final int initialCapacity, final float loadFactor) {
         super(0);
-        backingMap = new ConcurrentHashMap<>(initialCapacity, loadFactor);
+        state = initialCapacity > MAX_COMPACT_SIZE ? new ConcurrentHashMap<>(initialCapacity, loadFactor) : ImmutableArrayMap.empty();
     }
 
     public FastHashtable(final int initialCapacity) {
         super(0);
-        backingMap = new ConcurrentHashMap<>(initialCapacity);
+        state = initialCapacity > MAX_COMPACT_SIZE ? new ConcurrentHashMap<>(initialCapacity) : ImmutableArrayMap.empty();
     }
 
     public FastHashtable() {
         super(0);
-        backingMap = new ConcurrentHashMap<>();
+        state = ImmutableArrayMap.empty();
     }
 
     @SuppressWarnings("unchecked")
     public FastHashtable(final Map<? extends K, ? extends V> t) {
         super(0);
-        backingMap = new ConcurrentHashMap<>(t instanceof FastHashtable ? ((FastHashtable<? extends K, ? extends V>)t).backingMap : t);
+        final Map<? extends K, ? extends V> source = t instanceof FastHashtable ? (Map<? extends K, ? extends V>) ((FastHashtable<?, ?>) t).state : t;
+        if (source instanceof ImmutableArrayMap) {
+            // immutable, so it can be shared
+            state = source;
+        } else if (source.size() > MAX_COMPACT_SIZE) {
+            state = new ConcurrentHashMap<>(source);
+        } else {
+            state = ImmutableArrayMap.copyOf(source);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<K, V> map() {
+        return (Map<K, V>) state;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentHashMap<K, V> inflate() {
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                return (ConcurrentHashMap<K, V>) state;
+            }
+            final ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>((ImmutableArrayMap<K, V>) state);
+            if (stateUpdater.compareAndSet(this, state, map)) {
+                return map;
+            }
+        }
+    }
+
+    /**
+     * Replace a compact state, or inflate it if it has grown too large.
+     *
+     * @return {@code true} if the state was replaced, {@code false} if it was concurrently modified
+     */
+    private boolean replaceState(final ImmutableArrayMap<K, V> oldState, final ImmutableArrayMap<K, V> newState) {
+        if (oldState == newState) {
+            return true;
+        }
+        return stateUpdater.compareAndSet(this, oldState, newState.size() > MAX_COMPACT_SIZE ? new ConcurrentHashMap<>(newState) : newState);
+    }
+
+    Object getParsed() {
+        return parsed;
+    }
+
+    void setParsed(final Object parsed) {
+        this.parsed = parsed;
     }
 
     public int size() {
-        return backingMap.size();
+        return map().size();
     }
 
     public boolean isEmpty() {
-        return backingMap.isEmpty();
+        return map().isEmpty();
     }
 
     public V get(final Object key) {
-        return backingMap.get(key);
+        return map().get(key);
     }
 
     public boolean containsKey(final Object key) {
-        return backingMap.containsKey(key);
+        return map().containsKey(key);
     }
 
     public boolean containsValue(final Object value) {
-        return backingMap.containsValue(value);
+        return map().containsValue(value);
     }
 
+    @SuppressWarnings("unchecked")
     public V put(final K key, final V value) {
-        return backingMap.put(key, value);
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                return ((ConcurrentHashMap<K, V>) state).put(key, value);
+            }
+            final ImmutableArrayMap<K, V> oldState = (ImmutableArrayMap<K, V>) state;
+            if (replaceState(oldState, oldState.with(key, value))) {
+                return oldState.get(key);
+            }
+        }
     }
 
     public void putAll(final Map<? extends K, ? extends V> m) {
-        backingMap.putAll(m);
+        for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
+    @SuppressWarnings("unchecked")
     public V remove(final Object key) {
-        return backingMap.remove(key);
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                return ((ConcurrentHashMap<K, V>) state).remove(key);
+            }
+            final ImmutableArrayMap<K, V> oldState = (ImmutableArrayMap<K, V>) state;
+            if (replaceState(oldState, oldState.without(key))) {
+                return oldState.get(key);
+            }
+        }
     }
 
+    @SuppressWarnings("unchecked")
     public void clear() {
-        backingMap.clear();
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                ((ConcurrentHashMap<K, V>) state).clear();
+                return;
+            }
+            if (replaceState((ImmutableArrayMap<K, V>) state, ImmutableArrayMap.empty())) {
+                return;
+            }
+        }
     }
 
     public ConcurrentHashMap.KeySetView<K, V> keySet() {
-        return backingMap.keySet();
+        return inflate().keySet();
     }
 
     public Collection<V> values() {
-        return backingMap.values();
+        return inflate().values();
     }
 
     public Set<Map.Entry<K, V>> entrySet() {
-        return backingMap.entrySet();
+        return inflate().entrySet();
     }
 
     public int hashCode() {
@@ -116,67 +223,137 @@ public class FastHashtable<K, V> extends Hashtable<K, V> {
     }
 
     public String toString() {
-        return backingMap.toString();
+        return map().toString();
     }
 
     public boolean equals(final Object o) {
         return this == o;
     }
 
+    @SuppressWarnings("unchecked")
     public V putIfAbsent(final K key, final V value) {
-        return backingMap.putIfAbsent(key, value);
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                return ((ConcurrentHashMap<K, V>) state).putIfAbsent(key, value);
+            }
+            final ImmutableArrayMap<K, V> oldState = (ImmutableArrayMap<K, V>) state;
+            final V existing = oldState.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            if (replaceState(oldState, oldState.with(key, value))) {
+                return null;
+            }
+        }
     }
 
+    @SuppressWarnings("unchecked")
     public boolean remove(final Object key, final Object value) {
-        return backingMap.remove(key, value);
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                return ((ConcurrentHashMap<K, V>) state).remove(key, value);
+            }
+            final ImmutableArrayMap<K, V> oldState = (ImmutableArrayMap<K, V>) state;
+            final V existing = oldState.get(key);
+            if (existing == null || value == null || ! existing.equals(value)) {
+                return false;
+            }
+            if (replaceState(oldState, oldState.without(key))) {
+                return true;
+            }
+        }
     }
 
+    @SuppressWarnings("unchecked")
     public boolean replace(final K key, final V oldValue, final V newValue) {
-        return backingMap.replace(key, oldValue, newValue);
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                return ((ConcurrentHashMap<K, V>) state).replace(key, oldValue, newValue);
+            }
+            final ImmutableArrayMap<K, V> oldState = (ImmutableArrayMap<K, V>) state;
+            final V existing = oldState.get(key);
+            if (existing == null || ! existing.equals(oldValue)) {
+                return false;
+            }
+            if (replaceState(oldState, oldState.with(key, newValue))) {
+                return true;
+            }
+        }
     }
 
+    @SuppressWarnings("unchecked")
     public V replace(final K key, final V value) {
-        return backingMap.replace(key, value);
+        for (;;) {
+            final Object state = this.state;
+            if (state instanceof ConcurrentHashMap) {
+                return ((ConcurrentHashMap<K, V>) state).replace(key, value);
+            }
+            final ImmutableArrayMap<K, V> oldState = (ImmutableArrayMap<K, V>) state;
+            final V existing = oldState.get(key);
+            if (existing == null) {
+                return null;
+            }
+            if (replaceState(oldState, oldState.with(key, value))) {
+                return existing;
+            }
+        }
     }
 
     public V getOrDefault(final Object key, final V defaultValue) {
-        return backingMap.getOrDefault(key, defaultValue);
+        final V value = map().get(key);
+        return value == null ? defaultValue : value;
     }
 
     public void forEach(final BiConsumer<? super K, ? super V> action) {
-        backingMap.forEach(action);
+        map().forEach(action);
     }
 
     public void replaceAll(final BiFunction<? super K, ? super V, ? extends V> function) {
-        backingMap.replaceAll(function);
+        inflate().replaceAll(function);
     }
 
     public V computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction) {
-        return backingMap.computeIfAbsent(key, mappingFunction);
+        final V value = map().get(key);
+        return value != null ? value : inflate().computeIfAbsent(key, mappingFunction);
     }
 
     public V computeIfPresent(final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        return backingMap.computeIfPresent(key, remappingFunction);
+        return map().containsKey(key) ? inflate().computeIfPresent(key, remappingFunction) : null;
     }
 
     public V compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
-        return backingMap.compute(key, remappingFunction);
+        return inflate().compute(key, remappingFunction);
     }
 
     public V merge(final K key, final V value, final BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
-        return backingMap.merge(key, value, remappingFunction);
+        return inflate().merge(key, value, remappingFunction);
     }
 
     public boolean contains(final Object value) {
-        return backingMap.contains(value);
+        return map().containsValue(value);
     }
 
     public Enumeration<K> keys() {
-        return backingMap.keys();
+        return enumerationOf(map().keySet().iterator());
     }
 
     public Enumeration<V> elements() {
-        return backingMap.elements();
+        return enumerationOf(map().values().iterator());
+    }
+
+    private static <T> Enumeration<T> enumerationOf(final Iterator<T> iterator) {
+        return new Enumeration<T>() {
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            public T nextElement() {
+                return iterator.next();
+            }
+        };
     }
 
     public FastHashtable<K, V> clone() {
@@ -188,11 +365,32 @@ public class FastHashtable<K, V> extends Hashtable<K, V> {
     }
 
     public long mappingCount() {
-        return backingMap.mappingCount();
+        final Object state = this.state;
+        return state instanceof ConcurrentHashMap ? ((ConcurrentHashMap<?, ?>) state).mappingCount() : ((Map<?, ?>) state).size();
     }
 
     public ConcurrentHashMap.KeySetView<K, V> keySet(final V mappedValue) {
-        return backingMap.keySet(mappedValue);
+        return inflate().keySet(mappedValue);
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        final Object state = this.state;
+        final ObjectOutputStream.PutField fields = oos.putFields();
+        fields.put("backingMap", state instanceof ConcurrentHashMap ? state : new ConcurrentHashMap<>((Map<?, ?>) state));
+        oos.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField fields = ois.readFields();
+        final ConcurrentHashMap<K, V> backingMap = (ConcurrentHashMap<K, V>) fields.get("backingMap", null);
+        if (backingMap == null) {
+            state = ImmutableArrayMap.empty();
+        } else if (backingMap.size() > MAX_COMPACT_SIZE) {
+            state = backingMap;
+        } else {
+            state = ImmutableArrayMap.copyOf(backingMap);
+        }
     }
 
     public static <K, V> FastHashtable<K, V> of(final Hashtable<K, V> other) {
@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.wildfly.naming.client.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map which holds its keys and values in a single array, intended for the small maps that naming
+ * environments typically are.  Lookups are linear, and modifications produce a new instance.  Neither {@code null}
+ * keys nor {@code null} values are supported.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ImmutableArrayMap<K, V> extends AbstractMap<K, V> {
+    private static final Object[] NO_OBJECTS = new Object[0];
+
+    static final ImmutableArrayMap<?, ?> EMPTY = new ImmutableArrayMap<>(NO_OBJECTS);
+
+    /**
+     * The keys and values, alternating.
+     */
+    private final Object[] table;
+
+    private ImmutableArrayMap(final Object[] table) {
+        this.table = table;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> ImmutableArrayMap<K, V> empty() {
+        return (ImmutableArrayMap<K, V>) EMPTY;
+    }
+
+    static <K, V> ImmutableArrayMap<K, V> copyOf(final Map<? extends K, ? extends V> map) {
+        ImmutableArrayMap<K, V> result = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private int indexOf(final Object key) {
+        final Object[] table = this.table;
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get a map with the given mapping added or replaced.
+     *
+     * @param key the key (must not be {@code null})
+     * @param value the value (must not be {@code null})
+     * @return the new map, or this map if the mapping is already present
+     */
+    ImmutableArrayMap<K, V> with(final K key, final V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        final Object[] table = this.table;
+        final int idx = indexOf(key);
+        if (idx == -1) {
+            final Object[] newTable = new Object[table.length + 2];
+            System.arraycopy(table, 0, newTable, 0, table.length);
+            newTable[table.length] = key;
+            newTable[table.length + 1] = value;
+            return new ImmutableArrayMap<>(newTable);
+        } else if (table[idx + 1] == value) {
+            return this;
+        } else {
+            final Object[] newTable = table.clone();
+            newTable[idx + 1] = value;
+            return new ImmutableArrayMap<>(newTable);
+        }
+    }
+
+    /**
+     * Get a map with the given key removed.
+     *
+     * @param key the key
+     * @return the new map, or this map if the key is not present
+     */
+    ImmutableArrayMap<K, V> without(final Object key) {
+        final int idx = indexOf(key);
+        if (idx == -1) {
+            return this;
+        }
+        final Object[] table = this.table;
+        if (table.length == 2) {
+            return empty();
+        }
+        final Object[] newTable = new Object[table.length - 2];
+        System.arraycopy(table, 0, newTable, 0, idx);
+        System.arraycopy(table, idx + 2, newTable, idx, table.length - idx - 2);
+        return new ImmutableArrayMap<>(newTable);
+    }
+
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) table[index << 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) table[(index << 1) + 1];
+    }
+
+    public int size() {
+        return table.length >> 1;
+    }
+
+    public boolean isEmpty() {
+        return table.length == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(final Object key) {
+        final int idx = indexOf(key);
+        return idx == -1 ? null : (V) table[idx + 1];
+    }
+
+    public boolean containsKey(final Object key) {
+        return indexOf(key) != -1;
+    }
+
+    public boolean containsValue(final Object value) {
+        final Object[] table = this.table;
+        for (int i = 1; i < table.length; i += 2) {
+            if (table[i].equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        for (int i = 0; i < size(); i ++) {
+            action.accept(keyAt(i), valueAt(i));
+        }
+    }
+
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    int i;
+
+                    public boolean hasNext() {
+                        return i < size();
+                    }
+
+                    public Entry<K, V> next() {
+                        if (! hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final int idx = i++;
+                        return new SimpleImmutableEntry<>(keyAt(idx), valueAt(idx));
+                    }
+                };
+            }
+
+            public int size() {
+                return ImmutableArrayMap.this.size();
+            }
+        };
+    }
+}
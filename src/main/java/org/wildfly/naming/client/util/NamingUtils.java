@@ -24,7 +24,9 @@ package org.wildfly.naming.client.util;
 
 import static org.wildfly.naming.client._private.Messages.log;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 
 import javax.naming.Binding;
 import javax.naming.CompositeName;
@@ -32,10 +34,12 @@ import javax.naming.Context;
 import javax.naming.InvalidNameException;
 import javax.naming.Name;
 import javax.naming.NameClassPair;
+import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
 
 import org.wildfly.naming.client.AbstractContext;
 import org.wildfly.naming.client.CloseableNamingEnumeration;
+import org.wildfly.naming.security.SimpleNamePermissions;
 
 /**
  * Naming-related utilities.
@@ -125,6 +129,79 @@ public final class NamingUtils {
         };
     }
 
+    /**
+     * Filter the entries of a listing by name, consuming and closing the given enumeration.
+     *
+     * @param enumeration the listing (must not be {@code null})
+     * @param pattern the pattern which the names of the returned entries match, as defined by
+     *     {@link SimpleNamePermissions#matchesSegment(String, String)} (must not be {@code null})
+     * @param <T> the entry type
+     * @return the matching entries
+     * @throws NamingException if reading the listing failed
+     */
+    public static <T extends NameClassPair> CloseableNamingEnumeration<T> filterByName(final NamingEnumeration<T> enumeration, final String pattern) throws NamingException {
+        final List<T> results = new ArrayList<>();
+        try {
+            while (enumeration.hasMore()) {
+                final T item = enumeration.next();
+                if (SimpleNamePermissions.matchesSegment(pattern, item.getName())) {
+                    results.add(item);
+                }
+            }
+        } finally {
+            enumeration.close();
+        }
+        return CloseableNamingEnumeration.fromIterable(results);
+    }
+
+    /**
+     * Walk the subtree of a context by listing each of its subcontexts in turn.  This is the fallback for contexts
+     * which cannot walk a subtree in a single operation.  The names of the returned entries are composite names
+     * relative to the walked context.
+     *
+     * @param context the context to list (must not be {@code null})
+     * @param name the name of the subtree's root, relative to the context (must not be {@code null})
+     * @param maxDepth the maximum depth of the returned entries, where 1 returns only the entries of the named
+     *     context, or 0 to return all entries
+     * @return the entries of the subtree, each context being followed by its entries
+     * @throws NamingException if listing a context failed
+     */
+    public static CloseableNamingEnumeration<NameClassPair> walk(final Context context, final Name name, final int maxDepth) throws NamingException {
+        final List<NameClassPair> results = new ArrayList<>();
+        walk(context, name, new CompositeName(), maxDepth <= 0 ? Integer.MAX_VALUE : maxDepth, results);
+        return CloseableNamingEnumeration.fromIterable(results);
+    }
+
+    private static void walk(final Context context, final Name name, final CompositeName relativeName, final int remainingDepth, final List<NameClassPair> results) throws NamingException {
+        final NamingEnumeration<NameClassPair> enumeration = context.list(name);
+        try {
+            while (enumeration.hasMore()) {
+                final NameClassPair item = enumeration.next();
+                final CompositeName itemRelativeName = (CompositeName) ((CompositeName) relativeName.clone()).add(item.getName());
+                results.add(new NameClassPair(itemRelativeName.toString(), item.getClassName(), true));
+                if (remainingDepth > 1 && isContextClass(item.getClassName())) {
+                    walk(context, ((Name) name.clone()).add(item.getName()), itemRelativeName, remainingDepth - 1, results);
+                }
+            }
+        } finally {
+            enumeration.close();
+        }
+    }
+
+    private static boolean isContextClass(final String className) {
+        if (className == null) {
+            return false;
+        }
+        if (Context.class.getName().equals(className)) {
+            return true;
+        }
+        try {
+            return Context.class.isAssignableFrom(Class.forName(className, false, Thread.currentThread().getContextClassLoader()));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
     public static void safeClose(final Context context) {
         if (context != null) try {
             context.close();
@@ -27,7 +27,6 @@ import javax.naming.InvalidNameException;
 import org.wildfly.naming.client.SimpleName;
 import org.wildfly.security.permission.AbstractActionSetPermission;
 import org.wildfly.security.permission.AbstractPermissionCollection;
-import org.wildfly.security.permission.SimplePermissionCollection;
 import org.wildfly.security.util.StringEnumeration;
 
 /**
@@ -123,6 +122,6 @@ public abstract class AbstractNamingPermission<This extends AbstractNamingPermis
     protected abstract This constructNew(SimpleName simpleName, int actionBits);
 
     public AbstractPermissionCollection newPermissionCollection() {
-        return new SimplePermissionCollection(this);
+        return new NamingPermissionCollection(this);
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.wildfly.naming.security;
+
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.wildfly.naming.client.SimpleName;
+import org.wildfly.security.permission.AbstractPermission;
+import org.wildfly.security.permission.AbstractPermissionCollection;
+
+/**
+ * A permission collection for {@link AbstractNamingPermission} instances.  Granted names are compiled into a trie of
+ * name segments, where {@code *} segments and trailing {@code -} segments are held as wildcard entries, and the action
+ * bits of every grant ending at a node are combined.  Checking a permission thus costs time proportional to the depth
+ * of its name rather than to the number of granted permissions.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class NamingPermissionCollection extends AbstractPermissionCollection {
+    private static final long serialVersionUID = 4409474446339429493L;
+
+    /**
+     * A bit which is set on every node that terminates a grant, so that permissions without actions can be checked.
+     */
+    private static final int MATCHED = 1 << 31;
+
+    private final Class<?> type;
+    private final Node root = new Node();
+    private final ArrayList<Permission> permissions = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    NamingPermissionCollection(final AbstractNamingPermission<?> sourcePermission) {
+        super(sourcePermission);
+        type = sourcePermission.getClass();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return permissions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Iterator<Permission> iterator() {
+        return snapshot().iterator();
+    }
+
+    public Enumeration<Permission> elements() {
+        return Collections.enumeration(snapshot());
+    }
+
+    protected void doAdd(final AbstractPermission<?> permission) {
+        final AbstractNamingPermission<?> namingPermission = (AbstractNamingPermission<?>) permission;
+        final SimpleName name = namingPermission.getSimpleName();
+        final int bits = namingPermission.getActionBits() | MATCHED;
+        lock.lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < name.size(); i ++) {
+                final String segment = name.get(i);
+                if (segment.equals("-")) {
+                    // any following segments are irrelevant
+                    node.remainderBits |= bits;
+                    permissions.add(permission);
+                    return;
+                } else if (segment.equals("*")) {
+                    Node next = node.anySegment;
+                    if (next == null) {
+                        node.anySegment = next = new Node();
+                    }
+                    node = next;
+                } else {
+                    node = node.children.computeIfAbsent(segment, ignored -> new Node());
+                }
+            }
+            node.bits |= bits;
+            permissions.add(permission);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean implies(final Permission permission) {
+        if (permission == null || permission.getClass() != type) {
+            return false;
+        }
+        final AbstractNamingPermission<?> namingPermission = (AbstractNamingPermission<?>) permission;
+        final int required = namingPermission.getActionBits() | MATCHED;
+        return (impliedBits(root, namingPermission.getSimpleName(), 0, required) & required) == required;
+    }
+
+    private static int impliedBits(final Node node, final SimpleName name, final int idx, final int required) {
+        if (idx == name.size()) {
+            return node.bits;
+        }
+        // a trailing "-" matches any one or more remaining segments
+        int result = node.remainderBits;
+        final String segment = name.get(idx);
+        if (segment.equals("-")) {
+            // only a "-" grant implies a "-" name
+            return result;
+        }
+        final Node child = node.children.get(segment);
+        if (child != null && (result & required) != required) {
+            result |= impliedBits(child, name, idx + 1, required);
+        }
+        final Node anySegment = node.anySegment;
+        if (anySegment != null && (result & required) != required) {
+            result |= impliedBits(anySegment, name, idx + 1, required);
+        }
+        return result;
+    }
+
+    private ArrayList<Permission> snapshot() {
+        lock.lock();
+        try {
+            return new ArrayList<>(permissions);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static final class Node {
+        final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+        volatile Node anySegment;
+        volatile int bits;
+        volatile int remainderBits;
+    }
+}
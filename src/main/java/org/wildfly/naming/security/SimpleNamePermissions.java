@@ -22,6 +22,7 @@
 
 package org.wildfly.naming.security;
 
+import org.wildfly.common.Assert;
 import org.wildfly.naming.client.SimpleName;
 
 /**
@@ -59,4 +60,42 @@ public final class SimpleNamePermissions {
         }
         return mySize == otherSize;
     }
+
+    /**
+     * Determine whether a name segment matches a pattern.  As in {@link #impliesName(SimpleName, SimpleName)}, a
+     * pattern of {@code *} matches any segment; more generally, each {@code *} in the pattern matches any run of
+     * characters, so that {@code *Remote} matches every segment ending in {@code Remote}.
+     *
+     * @param pattern the pattern (must not be {@code null})
+     * @param segment the name segment (must not be {@code null})
+     * @return {@code true} if the segment matches the pattern, {@code false} otherwise
+     */
+    public static boolean matchesSegment(String pattern, String segment) {
+        Assert.checkNotNullParam("pattern", pattern);
+        Assert.checkNotNullParam("segment", segment);
+        final int patternLength = pattern.length();
+        final int segmentLength = segment.length();
+        int p = 0, s = 0;
+        // the position of the last wildcard seen, and of the segment character it was last matched up to
+        int star = -1, mark = 0;
+        while (s < segmentLength) {
+            if (p < patternLength && pattern.charAt(p) == '*') {
+                star = p ++;
+                mark = s;
+            } else if (p < patternLength && pattern.charAt(p) == segment.charAt(s)) {
+                p ++;
+                s ++;
+            } else if (star != -1) {
+                // let the last wildcard match one more character
+                p = star + 1;
+                s = ++ mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < patternLength && pattern.charAt(p) == '*') {
+            p ++;
+        }
+        return p == patternLength;
+    }
 }
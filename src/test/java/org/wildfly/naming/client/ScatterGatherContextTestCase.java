@@ -0,0 +1,157 @@
+package org.wildfly.naming.client;
+
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.naming.Context;
+import javax.naming.InterruptedNamingException;
+import javax.naming.NameNotFoundException;
+import javax.naming.OperationNotSupportedException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wildfly.naming.client.util.FastHashtable;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class ScatterGatherContextTestCase {
+
+    /**
+     * Create a context whose lookups take the given time and then return the given value, or fail if it is
+     * {@code null}.
+     */
+    private static Context member(final long delayMillis, final Object value, final CountDownLatch interrupted) {
+        return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] { Context.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "lookup": {
+                    try {
+                        Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw new InterruptedNamingException();
+                    }
+                    if (value == null) {
+                        throw new NameNotFoundException(String.valueOf(args[0]));
+                    }
+                    return value;
+                }
+                case "close": {
+                    return null;
+                }
+                default: {
+                    throw new OperationNotSupportedException(method.getName());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testFirstSuccess() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final ScatterGatherContext context = new ScatterGatherContext(new FastHashtable<>(), Arrays.asList(
+            member(10000, "slow", interrupted),
+            member(0, null, interrupted),
+            member(50, "fast", interrupted)
+        ), ScatterGatherContext.Policy.FIRST_SUCCESS, null);
+        try {
+            final long start = System.nanoTime();
+            Assert.assertEquals("fast", context.lookup("a/b"));
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            // the slow lookup is cancelled
+            Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testHighestPriority() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final ScatterGatherContext context = new ScatterGatherContext(new FastHashtable<>(), Arrays.asList(
+            member(50, null, interrupted),
+            member(200, "second", interrupted),
+            member(0, "third", interrupted)
+        ), ScatterGatherContext.Policy.HIGHEST_PRIORITY, null);
+        try {
+            Assert.assertEquals("second", context.lookup("a"));
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testLosingContextNotClosed() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicBoolean closed = new AtomicBoolean();
+        final Context found = (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] { Context.class }, (proxy, method, args) -> {
+            if (method.getName().equals("close")) {
+                closed.set(true);
+            }
+            return null;
+        });
+        final ScatterGatherContext context = new ScatterGatherContext(new FastHashtable<>(), Arrays.asList(
+            member(100, "first", interrupted),
+            member(0, found, interrupted)
+        ), ScatterGatherContext.Policy.HIGHEST_PRIORITY, null);
+        try {
+            Assert.assertEquals("first", context.lookup("a"));
+            // the looked up context is not owned by the scatter-gather context
+            Assert.assertFalse(closed.get());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testAllFailed() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final ScatterGatherContext context = new ScatterGatherContext(new FastHashtable<>(), Arrays.asList(
+            member(20, null, interrupted),
+            member(0, null, interrupted),
+            member(10, null, interrupted)
+        ), ScatterGatherContext.Policy.FIRST_SUCCESS, null);
+        try {
+            context.lookup("missing");
+            Assert.fail("Expected NameNotFoundException");
+        } catch (NameNotFoundException expected) {
+            Assert.assertEquals(2, expected.getSuppressed().length);
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testContextClassLoader() throws Exception {
+        // each member returns the context class loader with which it performed the lookup
+        final Context member = (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] { Context.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "lookup": {
+                    return Thread.currentThread().getContextClassLoader();
+                }
+                case "close": {
+                    return null;
+                }
+                default: {
+                    throw new OperationNotSupportedException(method.getName());
+                }
+            }
+        });
+        final ScatterGatherContext context = new ScatterGatherContext(new FastHashtable<>(), Arrays.asList(member, member), ScatterGatherContext.Policy.FIRST_SUCCESS, null);
+        final ClassLoader classLoader = new URLClassLoader(new URL[0], ScatterGatherContextTestCase.class.getClassLoader());
+        final Thread thread = Thread.currentThread();
+        final ClassLoader oldClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            Assert.assertSame(classLoader, context.lookup("a"));
+        } finally {
+            thread.setContextClassLoader(oldClassLoader);
+            context.close();
+        }
+    }
+}
@@ -1,11 +1,28 @@
 package org.wildfly.naming.client;
 
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.Binding;
 import javax.naming.CompositeName;
+import javax.naming.Context;
+import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
 import javax.naming.NamingException;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.wildfly.naming.client.util.FastHashtable;
+import org.wildfly.naming.client.util.NamingUtils;
 
 /**
  *  @author <a href="mailto:tadamski@redhat.com">Tomasz Adamski</a>
@@ -39,4 +56,149 @@ public class WildFlyRootContextTestCase {
         Assert.assertEquals(reparsedName.getName(),new CompositeName(expectedName));
     }
 
+    @Test
+    public void testInterceptors() throws Exception {
+        final Path dir = Files.createTempDirectory("interceptors");
+        final Path services = dir.resolve("META-INF/services/" + NamingInterceptor.class.getName());
+        Files.createDirectories(services.getParent());
+        Files.write(services, Arrays.asList(RecordingInterceptor.class.getName(), AnsweringInterceptor.class.getName()), StandardCharsets.UTF_8);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, getClass().getClassLoader())) {
+            final WildFlyRootContext context = new WildFlyRootContext(new FastHashtable<>(), classLoader);
+            RecordingInterceptor.operations.clear();
+            Assert.assertEquals(Integer.valueOf(42), context.lookup("answer"));
+            // the answering interceptor has a lower priority, so it is invoked first and does not proceed
+            Assert.assertTrue(RecordingInterceptor.operations.isEmpty());
+            try {
+                context.lookup("question");
+                Assert.fail("Expected NameNotFoundException");
+            } catch (NameNotFoundException expected) {
+            }
+            Assert.assertEquals(Arrays.asList("LOOKUP question"), RecordingInterceptor.operations);
+            RecordingInterceptor.operations.clear();
+            try (CloseableNamingEnumeration<NameClassPair> enumeration = context.walk("answer", 2)) {
+                Assert.assertEquals("answer", enumeration.next().getName());
+                Assert.assertFalse(enumeration.hasMore());
+            }
+            Assert.assertTrue(RecordingInterceptor.operations.isEmpty());
+            try (CloseableNamingEnumeration<NameClassPair> enumeration = context.walk("", 0)) {
+                Assert.assertFalse(enumeration.hasMore());
+            }
+            Assert.assertEquals(Arrays.asList("WALK "), RecordingInterceptor.operations);
+            RecordingInterceptor.operations.clear();
+            try (CloseableNamingEnumeration<NameClassPair> enumeration = context.listMatching("answer", "a*")) {
+                Assert.assertEquals("answer", enumeration.next().getName());
+                Assert.assertFalse(enumeration.hasMore());
+            }
+            try (CloseableNamingEnumeration<NameClassPair> enumeration = context.listMatching("", "a*")) {
+                Assert.assertFalse(enumeration.hasMore());
+            }
+            try (CloseableNamingEnumeration<Binding> enumeration = context.listBindingsMatching("", "a*")) {
+                Assert.assertFalse(enumeration.hasMore());
+            }
+            Assert.assertEquals(Arrays.asList("LIST_MATCHING ", "LIST_BINDINGS_MATCHING "), RecordingInterceptor.operations);
+        } finally {
+            Files.delete(services);
+            Files.delete(services.getParent());
+            Files.delete(services.getParent().getParent());
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testEnvironmentChange() throws Exception {
+        final Path dir = Files.createTempDirectory("providers");
+        final Path providerServices = dir.resolve("META-INF/services/" + NamingProviderFactory.class.getName());
+        final Path contextServices = providerServices.resolveSibling(NamingContextFactory.class.getName());
+        Files.createDirectories(providerServices.getParent());
+        Files.write(providerServices, Arrays.asList(RecordingProviderFactory.class.getName()), StandardCharsets.UTF_8);
+        Files.write(contextServices, Arrays.asList(RecordingProviderFactory.class.getName()), StandardCharsets.UTF_8);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, getClass().getClassLoader())) {
+            final FastHashtable<String, Object> env = new FastHashtable<>();
+            env.put(Context.PROVIDER_URL, "recording://localhost");
+            env.put(Context.SECURITY_CREDENTIALS, "one");
+            final WildFlyRootContext context = new WildFlyRootContext(env, classLoader);
+            RecordingProviderFactory.credentials.clear();
+            RecordingProviderFactory.closed.set(0);
+            lookupMissing(context);
+            lookupMissing(context);
+            Assert.assertEquals(Arrays.asList("one"), RecordingProviderFactory.credentials);
+            // setting an unchanged value keeps the provider
+            context.addToEnvironment(Context.SECURITY_CREDENTIALS, "one");
+            lookupMissing(context);
+            Assert.assertEquals(Arrays.asList("one"), RecordingProviderFactory.credentials);
+            context.addToEnvironment(Context.SECURITY_CREDENTIALS, "two");
+            lookupMissing(context);
+            Assert.assertEquals(Arrays.asList("one", "two"), RecordingProviderFactory.credentials);
+            context.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+            lookupMissing(context);
+            Assert.assertEquals(Arrays.asList("one", "two", "null"), RecordingProviderFactory.credentials);
+            Assert.assertEquals(0, RecordingProviderFactory.closed.get());
+            context.close();
+            Assert.assertEquals(3, RecordingProviderFactory.closed.get());
+        } finally {
+            Files.delete(providerServices);
+            Files.delete(contextServices);
+            Files.delete(providerServices.getParent());
+            Files.delete(providerServices.getParent().getParent());
+            Files.delete(dir);
+        }
+    }
+
+    private static void lookupMissing(final Context context) throws NamingException {
+        try {
+            context.lookup("missing");
+            Assert.fail("Expected NameNotFoundException");
+        } catch (NameNotFoundException expected) {
+        }
+    }
+
+    public static final class RecordingProviderFactory implements NamingProviderFactory, NamingContextFactory {
+        static final List<String> credentials = new CopyOnWriteArrayList<>();
+        static final AtomicInteger closed = new AtomicInteger();
+
+        public boolean supportsUriScheme(final String providerScheme) {
+            return "recording".equals(providerScheme);
+        }
+
+        public NamingProvider createProvider(final URI providerUri, final FastHashtable<String, Object> env) {
+            credentials.add(String.valueOf(env.get(Context.SECURITY_CREDENTIALS)));
+            return closed::incrementAndGet;
+        }
+
+        public boolean supportsUriScheme(final NamingProvider namingProvider, final String nameScheme) {
+            return nameScheme == null;
+        }
+
+        public Context createRootContext(final NamingProvider namingProvider, final String nameScheme, final FastHashtable<String, Object> env) {
+            return NamingUtils.emptyContext(env);
+        }
+    }
+
+    public static final class RecordingInterceptor implements NamingInterceptor {
+        static final List<String> operations = new CopyOnWriteArrayList<>();
+
+        public Object intercept(final NamingInvocation invocation) throws NamingException {
+            operations.add(invocation.getOperation() + " " + invocation.getName());
+            return invocation.proceed();
+        }
+
+        public int getPriority() {
+            return 1;
+        }
+    }
+
+    public static final class AnsweringInterceptor implements NamingInterceptor {
+        public Object intercept(final NamingInvocation invocation) throws NamingException {
+            if (invocation.getOperation() == NamingOperation.LOOKUP && invocation.getName().toString().equals("answer")) {
+                return Integer.valueOf(42);
+            }
+            if (invocation.getOperation() == NamingOperation.LIST_MATCHING && invocation.getName().toString().equals("answer") && "a*".equals(invocation.getPattern())) {
+                return CloseableNamingEnumeration.fromIterable(Collections.singletonList(new NameClassPair("answer", Integer.class.getName())));
+            }
+            if (invocation.getOperation() == NamingOperation.WALK && invocation.getName().toString().equals("answer") && invocation.getMaxDepth() == 2) {
+                return CloseableNamingEnumeration.fromIterable(Collections.singletonList(new NameClassPair("answer", Integer.class.getName())));
+            }
+            return invocation.proceed();
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package org.wildfly.naming.client.remote;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.CommunicationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class CircuitBreakerTestCase {
+
+    @Test
+    public void testStates() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(2, 50, TimeUnit.MILLISECONDS);
+        breaker.acquire();
+        breaker.failed();
+        breaker.acquire();
+        breaker.failed();
+        Assert.assertTrue(breaker.isOpen());
+        try {
+            breaker.acquire();
+            Assert.fail("Expected CommunicationException");
+        } catch (CommunicationException expected) {
+        }
+        Thread.sleep(60);
+        // only one trial is let through
+        breaker.acquire();
+        try {
+            breaker.acquire();
+            Assert.fail("Expected CommunicationException");
+        } catch (CommunicationException expected) {
+        }
+        breaker.failed();
+        try {
+            breaker.acquire();
+            Assert.fail("Expected CommunicationException");
+        } catch (CommunicationException expected) {
+        }
+        Thread.sleep(60);
+        breaker.acquire();
+        breaker.succeeded();
+        Assert.assertFalse(breaker.isOpen());
+        breaker.acquire();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(0, 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i ++) {
+            breaker.acquire();
+            breaker.failed();
+        }
+        Assert.assertFalse(breaker.isOpen());
+    }
+}
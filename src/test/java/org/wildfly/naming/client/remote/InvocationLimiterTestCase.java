@@ -0,0 +1,54 @@
+package org.wildfly.naming.client.remote;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.ServiceUnavailableException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class InvocationLimiterTestCase {
+
+    @Test
+    public void testLimit() throws Exception {
+        final InvocationLimiter limiter = new InvocationLimiter(1);
+        limiter.acquire(0);
+        Assert.assertEquals(1, limiter.getOutstandingCount());
+        try {
+            limiter.acquire(0);
+            Assert.fail("Expected ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+        }
+        try {
+            limiter.acquire(TimeUnit.MILLISECONDS.toNanos(20));
+            Assert.fail("Expected ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+        }
+        Assert.assertEquals(2, limiter.getRejectedCount());
+        Assert.assertEquals(1, limiter.getQueuedCount());
+        Assert.assertTrue(limiter.getMaxQueueTime(TimeUnit.MILLISECONDS) >= 20);
+
+        // a waiting caller gets the permit once it is released
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire(-1);
+                acquired.countDown();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waiter.start();
+        while (limiter.getQueueLength() == 0) {
+            Thread.sleep(1);
+        }
+        limiter.release();
+        Assert.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, limiter.getAcquiredCount());
+        Assert.assertEquals(1, limiter.getOutstandingCount());
+    }
+}
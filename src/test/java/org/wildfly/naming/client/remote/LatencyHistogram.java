@@ -0,0 +1,91 @@
+package org.wildfly.naming.client.remote;
+
+/**
+ * A log-linear histogram of latency values in the style of HdrHistogram.  Values below 128 are recorded exactly, and
+ * larger values are recorded in buckets of 64 linear steps per power of two, giving a relative error below 1.6%.
+ * Instances are not thread-safe; each recording thread should use its own histogram, to be merged with {@link #add}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS >> 1;
+    private static final int MAX_SHIFT = 64 - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[SUB_BUCKETS + MAX_SHIFT * HALF];
+    private long totalCount;
+    private long maxValue;
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / HALF + 1;
+        final long mantissa = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value the value (must not be negative)
+     */
+    void recordValue(long value) {
+        counts[indexOf(value)] ++;
+        totalCount ++;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    /**
+     * Add the contents of another histogram to this one.
+     *
+     * @param other the other histogram
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i ++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Get the value at the given percentile.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value equivalent to the value at that percentile, or 0 if nothing was recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i ++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+}
@@ -0,0 +1,117 @@
+package org.wildfly.naming.client.remote;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.CommunicationException;
+import javax.naming.Context;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wildfly.naming.client.WildFlyInitialContextFactory;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LookupSnapshotTestCase {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final Path file = Files.createTempFile("naming", ".snapshot");
+        Files.delete(file);
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 3, 16);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            env.put(RemoteNamingProviderFactory.LOOKUP_CACHE_TTL, "60000");
+            env.put(RemoteNamingProviderFactory.SNAPSHOT_FILE, file.toString());
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-1")).length);
+            Assert.assertTrue(context.lookup("data") instanceof Context);
+            context.close();
+            LookupSnapshot.forFile(file, 0).write();
+
+            final Map<String, List<LookupSnapshot.Entry>> loaded = LookupSnapshot.read(file);
+            Assert.assertEquals(1, loaded.size());
+            final List<LookupSnapshot.Entry> entries = loaded.values().iterator().next();
+            Assert.assertEquals(2, entries.size());
+            int objects = 0, contexts = 0;
+            for (LookupSnapshot.Entry entry : entries) {
+                Assert.assertFalse(entry.response.isValidated());
+                final byte[] bytes = entry.response.getBytes();
+                if (bytes == null) {
+                    contexts ++;
+                } else {
+                    objects ++;
+                    Assert.assertEquals(16, ((byte[]) RemoteClientTransport.unmarshal(entry.response.getConfiguration(), bytes, getClass().getClassLoader())).length);
+                }
+            }
+            Assert.assertEquals(1, objects);
+            Assert.assertEquals(1, contexts);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testLoadedEntryExpires() throws Exception {
+        final Path file = Files.createTempFile("naming", ".snapshot");
+        final Path copy = Files.createTempFile("naming", ".snapshot");
+        Files.delete(file);
+        try {
+            final ReferenceNamingServer server = new ReferenceNamingServer();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            try {
+                server.populate("data", 3, 16);
+                server.start();
+                env.put(Context.PROVIDER_URL, server.getUri().toString());
+                env.put(RemoteNamingProviderFactory.LOOKUP_CACHE_TTL, "100");
+                env.put(RemoteNamingProviderFactory.LOOKUP_CACHE_STALE_IF_ERROR, "200");
+                env.put(RemoteNamingProviderFactory.PROVIDER_IDLE_TIMEOUT, "0");
+                env.put(RemoteNamingProviderFactory.SNAPSHOT_FILE, file.toString());
+                final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+                Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-1")).length);
+                context.close();
+                LookupSnapshot.forFile(file, 0).write();
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                server.close();
+            }
+            // let the idle provider be discarded, so that a new one loads the copy
+            Thread.sleep(2000);
+            env.put(RemoteNamingProviderFactory.SNAPSHOT_FILE, copy.toString());
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                // the server is gone, but the loaded entry is fresh
+                Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-1")).length);
+                Thread.sleep(500);
+                try {
+                    context.lookup("data/entry-1");
+                    Assert.fail("Expected CommunicationException");
+                } catch (CommunicationException expected) {
+                }
+            } finally {
+                context.close();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Test
+    public void testInvalidFile() throws Exception {
+        final Path file = Files.createTempFile("naming", ".snapshot");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3 });
+            Assert.assertTrue(LookupSnapshot.read(file).isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package org.wildfly.naming.client.remote;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.naming.Context;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+
+import org.wildfly.naming.client.WildFlyInitialContextFactory;
+
+/**
+ * A command-line load generator which drives a mix of naming operations through {@link WildFlyInitialContextFactory}
+ * from a number of threads, and reports throughput and latency percentiles for each operation.  If no provider URL is
+ * given, an in-JVM {@link ReferenceNamingServer} is started to run against.
+ * <p>
+ * Options (all optional):
+ * <ul>
+ *     <li>{@code --url=remote://host:port} the provider URL</li>
+ *     <li>{@code --threads=N} the number of load threads (default 8)</li>
+ *     <li>{@code --duration=S} the measured run time in seconds (default 10)</li>
+ *     <li>{@code --warmup=S} the unmeasured warm up time in seconds (default 2)</li>
+ *     <li>{@code --mix=lookup:70,list:10,listBindings:5,bind:5,rebind:10} the relative weight of each operation</li>
+ *     <li>{@code --rate=N} the target operations per second of each thread; when given, operations are issued on a fixed
+ *     schedule and response times are measured from the intended start of each operation, correcting for coordinated
+ *     omission</li>
+ *     <li>{@code --context=name} the context holding the looked up entries (default {@code data})</li>
+ *     <li>{@code --entries=N} the number of entries to look up (default 100)</li>
+ *     <li>{@code --payload=N} the payload size of each entry in bytes, for the in-JVM server (default 256)</li>
+ *     <li>{@code --server-latency=MS} the artificial response latency of the in-JVM server (default 0)</li>
+ * </ul>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class NamingLoadGenerator {
+
+    enum Operation {
+        LOOKUP("lookup"),
+        LIST("list"),
+        LIST_BINDINGS("listBindings"),
+        BIND("bind"),
+        REBIND("rebind"),
+        ;
+
+        final String optionName;
+
+        Operation(final String optionName) {
+            this.optionName = optionName;
+        }
+
+        static Operation forName(String name) {
+            for (Operation operation : values()) {
+                if (operation.optionName.equalsIgnoreCase(name)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation " + name);
+        }
+    }
+
+    private String url;
+    private int threads = 8;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(2);
+    private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private long intervalNanos;
+    private String context = "data";
+    private int entries = 100;
+    private int payloadSize = 256;
+    private long serverLatencyMillis;
+
+    private NamingLoadGenerator() {
+        mix.put(Operation.LOOKUP, 70);
+        mix.put(Operation.LIST, 10);
+        mix.put(Operation.LIST_BINDINGS, 5);
+        mix.put(Operation.BIND, 5);
+        mix.put(Operation.REBIND, 10);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final NamingLoadGenerator generator = new NamingLoadGenerator();
+        generator.parse(args);
+        generator.run();
+    }
+
+    private void parse(String[] args) {
+        for (String arg : args) {
+            final int idx = arg.indexOf('=');
+            if (! arg.startsWith("--") || idx == -1) {
+                throw new IllegalArgumentException("Invalid argument " + arg);
+            }
+            final String key = arg.substring(2, idx);
+            final String value = arg.substring(idx + 1);
+            switch (key) {
+                case "url": url = value; break;
+                case "threads": threads = Integer.parseInt(value); break;
+                case "duration": durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(value)); break;
+                case "warmup": warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(value)); break;
+                case "rate": intervalNanos = TimeUnit.SECONDS.toNanos(1) / Long.parseLong(value); break;
+                case "context": context = value; break;
+                case "entries": entries = Integer.parseInt(value); break;
+                case "payload": payloadSize = Integer.parseInt(value); break;
+                case "server-latency": serverLatencyMillis = Long.parseLong(value); break;
+                case "mix": {
+                    mix.clear();
+                    for (String item : value.split(",")) {
+                        final String[] parts = item.split(":");
+                        mix.put(Operation.forName(parts[0]), Integer.valueOf(parts.length > 1 ? parts[1] : "1"));
+                    }
+                    break;
+                }
+                default: throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        ReferenceNamingServer server = null;
+        try {
+            if (url == null) {
+                server = new ReferenceNamingServer();
+                server.setLatency(serverLatencyMillis, TimeUnit.MILLISECONDS);
+                server.populate(context, entries, payloadSize);
+                url = server.start().toString();
+                System.out.printf("Started in-JVM naming server at %s%n", url);
+            }
+            final Context setup = connect();
+            try {
+                setup.createSubcontext("load");
+            } catch (NameAlreadyBoundException ignored) {
+            }
+            setup.close();
+
+            final Operation[] schedule = buildSchedule();
+            final List<Worker> workers = new ArrayList<>(threads);
+            final CountDownLatch done = new CountDownLatch(threads);
+            final long start = System.nanoTime();
+            final long measureStart = start + warmupNanos;
+            final long end = measureStart + durationNanos;
+            for (int i = 0; i < threads; i ++) {
+                final Worker worker = new Worker(i, schedule, start, measureStart, end, done);
+                workers.add(worker);
+                final Thread thread = new Thread(worker, "naming-load-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            done.await();
+            report(workers);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private Context connect() throws NamingException {
+        final Hashtable<String, Object> env = new Hashtable<>();
+        env.put(Context.PROVIDER_URL, url);
+        return new WildFlyInitialContextFactory().getInitialContext(env);
+    }
+
+    private Operation[] buildSchedule() {
+        final List<Operation> list = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue().intValue(); i ++) {
+                list.add(entry.getKey());
+            }
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("Empty operation mix");
+        }
+        return list.toArray(new Operation[list.size()]);
+    }
+
+    private void report(List<Worker> workers) {
+        final double seconds = durationNanos / 1e9;
+        final boolean corrected = intervalNanos > 0;
+        System.out.printf("%d threads, %.1f s measured%s%n", threads, seconds, corrected ? String.format(", %d ops/s per thread target", TimeUnit.SECONDS.toNanos(1) / intervalNanos) : "");
+        System.out.printf("%-14s %10s %10s %9s %9s %9s %9s %9s %7s%n", "operation", "count", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "errors");
+        final LatencyHistogram totalService = new LatencyHistogram();
+        final LatencyHistogram totalResponse = new LatencyHistogram();
+        long totalErrors = 0;
+        for (Operation operation : Operation.values()) {
+            if (! mix.containsKey(operation)) {
+                continue;
+            }
+            final LatencyHistogram service = new LatencyHistogram();
+            final LatencyHistogram response = new LatencyHistogram();
+            long errors = 0;
+            for (Worker worker : workers) {
+                service.add(worker.serviceTimes.get(operation));
+                response.add(worker.responseTimes.get(operation));
+                errors += worker.errors.get(operation)[0];
+            }
+            totalService.add(service);
+            totalResponse.add(response);
+            totalErrors += errors;
+            printRow(operation.optionName, corrected ? response : service, seconds, errors);
+        }
+        printRow("total", corrected ? totalResponse : totalService, seconds, totalErrors);
+        if (corrected) {
+            // the service time excludes any time spent waiting behind a stalled operation
+            printRow("uncorrected", totalService, seconds, totalErrors);
+        }
+    }
+
+    private static void printRow(String name, LatencyHistogram histogram, double seconds, long errors) {
+        System.out.printf(Locale.ROOT, "%-14s %10d %10.0f %9.1f %9.1f %9.1f %9.1f %9.1f %7d%n",
+            name,
+            histogram.getTotalCount(),
+            histogram.getTotalCount() / seconds,
+            histogram.getValueAtPercentile(50.0) / 1000.0,
+            histogram.getValueAtPercentile(90.0) / 1000.0,
+            histogram.getValueAtPercentile(99.0) / 1000.0,
+            histogram.getValueAtPercentile(99.9) / 1000.0,
+            histogram.getMaxValue() / 1000.0,
+            errors);
+    }
+
+    final class Worker implements Runnable {
+        private final int index;
+        private final Operation[] schedule;
+        private final long start;
+        private final long measureStart;
+        private final long end;
+        private final CountDownLatch done;
+        final Map<Operation, LatencyHistogram> serviceTimes = new EnumMap<>(Operation.class);
+        final Map<Operation, LatencyHistogram> responseTimes = new EnumMap<>(Operation.class);
+        final Map<Operation, long[]> errors = new EnumMap<>(Operation.class);
+        private long counter;
+
+        Worker(final int index, final Operation[] schedule, final long start, final long measureStart, final long end, final CountDownLatch done) {
+            this.index = index;
+            this.schedule = schedule;
+            this.start = start;
+            this.measureStart = measureStart;
+            this.end = end;
+            this.done = done;
+            for (Operation operation : Operation.values()) {
+                serviceTimes.put(operation, new LatencyHistogram());
+                responseTimes.put(operation, new LatencyHistogram());
+                errors.put(operation, new long[1]);
+            }
+        }
+
+        public void run() {
+            try {
+                final Context context = connect();
+                try {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long intended = start;
+                    for (;;) {
+                        if (intervalNanos > 0) {
+                            intended += intervalNanos;
+                            long now;
+                            while ((now = System.nanoTime()) < intended) {
+                                LockSupport.parkNanos(intended - now);
+                            }
+                        } else {
+                            intended = System.nanoTime();
+                        }
+                        if (intended >= end || System.nanoTime() >= end) {
+                            break;
+                        }
+                        final Operation operation = schedule[random.nextInt(schedule.length)];
+                        final long begin = System.nanoTime();
+                        boolean failed = false;
+                        try {
+                            perform(context, operation, random);
+                        } catch (NamingException e) {
+                            failed = true;
+                        }
+                        final long finish = System.nanoTime();
+                        if (begin >= measureStart) {
+                            if (failed) {
+                                errors.get(operation)[0] ++;
+                            } else {
+                                serviceTimes.get(operation).recordValue(finish - begin);
+                                responseTimes.get(operation).recordValue(finish - intended);
+                            }
+                        }
+                    }
+                } finally {
+                    context.close();
+                }
+            } catch (NamingException e) {
+                e.printStackTrace();
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void perform(Context ctx, Operation operation, ThreadLocalRandom random) throws NamingException {
+            switch (operation) {
+                case LOOKUP: {
+                    ctx.lookup(context + "/entry-" + random.nextInt(entries));
+                    break;
+                }
+                case LIST: {
+                    drain(ctx.list(context));
+                    break;
+                }
+                case LIST_BINDINGS: {
+                    drain(ctx.listBindings(context));
+                    break;
+                }
+                case BIND: {
+                    ctx.bind("load/t" + index + "-" + counter ++, new byte[payloadSize]);
+                    break;
+                }
+                case REBIND: {
+                    ctx.rebind("load/t" + index + "-r" + random.nextInt(16), new byte[payloadSize]);
+                    break;
+                }
+            }
+        }
+
+        private void drain(NamingEnumeration<?> enumeration) throws NamingException {
+            try {
+                while (enumeration.hasMore()) {
+                    enumeration.next();
+                }
+            } finally {
+                enumeration.close();
+            }
+        }
+    }
+}
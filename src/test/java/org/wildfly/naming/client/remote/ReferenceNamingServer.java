@@ -0,0 +1,917 @@
+package org.wildfly.naming.client.remote;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.naming.Binding;
+import javax.naming.CompositeName;
+import javax.naming.Context;
+import javax.naming.ContextNotEmptyException;
+import javax.naming.InvalidNameException;
+import javax.naming.Name;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.NotContextException;
+import javax.naming.OperationNotSupportedException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamingEvent;
+
+import org.jboss.marshalling.ContextClassResolver;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.Marshalling;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.jboss.marshalling.Unmarshaller;
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.wildfly.naming.client.SimpleName;
+import org.wildfly.naming.client.util.NamingUtils;
+import org.wildfly.naming.security.SimpleNamePermissions;
+import org.wildfly.security.auth.permission.LoginPermission;
+import org.wildfly.security.auth.realm.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.auth.server.MechanismConfiguration;
+import org.wildfly.security.auth.server.MechanismConfigurationSelector;
+import org.wildfly.security.auth.server.SaslAuthenticationFactory;
+import org.wildfly.security.auth.server.SecurityDomain;
+import org.wildfly.security.permission.PermissionVerifier;
+import org.wildfly.security.sasl.anonymous.AnonymousServerFactory;
+import org.xnio.OptionMap;
+import org.xnio.StreamConnection;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * An in-memory naming server which speaks both versions of the remote naming protocol over a loopback Remoting
+ * connector, for exercising the client transport end to end.  Responses may be delayed by an artificial latency, and
+ * entries with payloads of a given size may be bound ahead of time.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ReferenceNamingServer implements AutoCloseable {
+    private static final byte[] initialBytes = {
+        'n', 'a', 'm', 'i', 'n', 'g'
+    };
+    private static final int WALK_CHUNK_SIZE = 64;
+
+    private final int[] versions;
+    private final Directory root = new Directory();
+    private final ReentrantLock treeLock = new ReentrantLock();
+    private final List<ServerConnection> connections = new CopyOnWriteArrayList<>();
+    private volatile long latencyNanos;
+    private volatile boolean capabilitiesEnabled = true;
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+    private Endpoint endpoint;
+    private Registration registration;
+    private AcceptingChannel<StreamConnection> server;
+    private URI uri;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param versions the protocol versions to offer, or none to offer all versions
+     */
+    ReferenceNamingServer(int... versions) {
+        this.versions = versions.length == 0 ? new int[] { 1, 2 } : versions.clone();
+    }
+
+    /**
+     * Set the artificial latency which is added before each response.
+     *
+     * @param latency the latency
+     * @param unit the latency unit
+     */
+    void setLatency(long latency, TimeUnit unit) {
+        latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * Establish whether capabilities are offered to version 2 clients.  A server without capabilities behaves like a
+     * server which predates capability negotiation.
+     *
+     * @param capabilitiesEnabled {@code true} to offer capabilities, {@code false} otherwise
+     */
+    void setCapabilitiesEnabled(boolean capabilitiesEnabled) {
+        this.capabilitiesEnabled = capabilitiesEnabled;
+    }
+
+    /**
+     * Get the number of requests which this server has received.
+     *
+     * @return the request count
+     */
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Bind an object, creating any missing intermediate contexts.
+     *
+     * @param name the name to bind
+     * @param value the object to bind
+     * @throws NamingException if the name is invalid
+     */
+    void bind(String name, Object value) throws NamingException {
+        final CompositeName compositeName = new CompositeName(name);
+        treeLock.lock();
+        try {
+            Directory directory = root;
+            for (int i = 0; i < compositeName.size() - 1; i ++) {
+                final Object next = directory.entries.computeIfAbsent(compositeName.get(i), ignored -> new Directory());
+                if (! (next instanceof Directory)) {
+                    throw new NotContextException(compositeName.getPrefix(i + 1).toString());
+                }
+                directory = (Directory) next;
+            }
+            directory.entries.put(compositeName.get(compositeName.size() - 1), value);
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    /**
+     * Bind a number of byte array payloads of the given size into the given context, named {@code entry-0} through
+     * {@code entry-<count - 1>}.
+     *
+     * @param context the name of the context to populate
+     * @param count the number of entries to bind
+     * @param payloadSize the size of each payload in bytes
+     * @throws NamingException if the name is invalid
+     */
+    void populate(String context, int count, int payloadSize) throws NamingException {
+        final String prefix = context.isEmpty() ? "" : context + "/";
+        for (int i = 0; i < count; i ++) {
+            bind(prefix + "entry-" + i, new byte[payloadSize]);
+        }
+    }
+
+    /**
+     * Start the server on an ephemeral loopback port.
+     *
+     * @return the provider URI of the server
+     * @throws IOException if the server could not be started
+     */
+    URI start() throws IOException {
+        executor = Executors.newScheduledThreadPool(4, r -> {
+            final Thread thread = new Thread(r, "naming server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        endpoint = Endpoint.builder().setEndpointName("reference-naming-server").build();
+        registration = endpoint.registerService("naming", new OpenListener() {
+            public void channelOpened(final Channel channel) {
+                new ServerConnection(channel).greet();
+            }
+
+            public void registrationTerminated() {
+            }
+        }, OptionMap.EMPTY);
+        final SecurityDomain.Builder domainBuilder = SecurityDomain.builder();
+        domainBuilder.addRealm("default", new SimpleMapBackedSecurityRealm()).build();
+        domainBuilder.setDefaultRealmName("default");
+        domainBuilder.setPermissionMapper((permissionMappable, roles) -> PermissionVerifier.from(new LoginPermission()));
+        final SaslAuthenticationFactory authenticationFactory = SaslAuthenticationFactory.builder()
+            .setSecurityDomain(domainBuilder.build())
+            .setMechanismConfigurationSelector(MechanismConfigurationSelector.constantSelector(MechanismConfiguration.EMPTY))
+            .setFactory(new AnonymousServerFactory())
+            .build();
+        final NetworkServerProvider serverProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
+        server = serverProvider.createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), OptionMap.EMPTY, authenticationFactory, null);
+        final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+        uri = URI.create("remote://" + address.getHostString() + ":" + address.getPort());
+        return uri;
+    }
+
+    URI getUri() {
+        return uri;
+    }
+
+    public void close() {
+        safeClose(server);
+        safeClose(registration);
+        safeClose(endpoint);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    Object resolve(final CompositeName name) throws NamingException {
+        Object current = root;
+        for (int i = 0; i < name.size(); i ++) {
+            if (! (current instanceof Directory)) {
+                throw new NotContextException(name.getPrefix(i).toString());
+            }
+            current = ((Directory) current).entries.get(name.get(i));
+            if (current == null) {
+                throw new NameNotFoundException(name.getPrefix(i + 1).toString());
+            }
+        }
+        return current;
+    }
+
+    Directory resolveParent(final CompositeName name) throws NamingException {
+        if (name.isEmpty()) {
+            throw new InvalidNameException("Empty name");
+        }
+        final Object parent = resolve((CompositeName) name.getPrefix(name.size() - 1));
+        if (! (parent instanceof Directory)) {
+            throw new NotContextException(name.getPrefix(name.size() - 1).toString());
+        }
+        return (Directory) parent;
+    }
+
+    void bind(final CompositeName name, final Object value, final boolean rebind) throws NamingException {
+        final Object old;
+        treeLock.lock();
+        try {
+            final Directory parent = resolveParent(name);
+            final String last = name.get(name.size() - 1);
+            if (rebind) {
+                old = parent.entries.put(last, value);
+            } else {
+                old = parent.entries.putIfAbsent(last, value);
+                if (old != null) {
+                    throw new NameAlreadyBoundException(name.toString());
+                }
+            }
+        } finally {
+            treeLock.unlock();
+        }
+        if (old == null) {
+            fireEvent(NamingEvent.OBJECT_ADDED, name, binding(name, value), null);
+        } else {
+            fireEvent(NamingEvent.OBJECT_CHANGED, name, binding(name, value), binding(name, old));
+        }
+    }
+
+    void unbind(final CompositeName name) throws NamingException {
+        final Object old;
+        treeLock.lock();
+        try {
+            old = resolveParent(name).entries.remove(name.get(name.size() - 1));
+        } finally {
+            treeLock.unlock();
+        }
+        if (old != null) {
+            fireEvent(NamingEvent.OBJECT_REMOVED, name, null, binding(name, old));
+        }
+    }
+
+    void rename(final CompositeName oldName, final CompositeName newName) throws NamingException {
+        final Object value;
+        treeLock.lock();
+        try {
+            final Directory oldParent = resolveParent(oldName);
+            final Directory newParent = resolveParent(newName);
+            final String oldLast = oldName.get(oldName.size() - 1);
+            final String newLast = newName.get(newName.size() - 1);
+            value = oldParent.entries.get(oldLast);
+            if (value == null) {
+                throw new NameNotFoundException(oldName.toString());
+            }
+            if (newParent.entries.putIfAbsent(newLast, value) != null) {
+                throw new NameAlreadyBoundException(newName.toString());
+            }
+            oldParent.entries.remove(oldLast);
+        } finally {
+            treeLock.unlock();
+        }
+        fireEvent(NamingEvent.OBJECT_RENAMED, newName, binding(newName, value), binding(oldName, value));
+    }
+
+    void createSubcontext(final CompositeName name) throws NamingException {
+        bind(name, new Directory(), false);
+    }
+
+    void destroySubcontext(final CompositeName name) throws NamingException {
+        final Object old;
+        treeLock.lock();
+        try {
+            final Directory parent = resolveParent(name);
+            final String last = name.get(name.size() - 1);
+            old = parent.entries.get(last);
+            if (old == null) {
+                return;
+            }
+            if (! (old instanceof Directory)) {
+                throw new NotContextException(name.toString());
+            }
+            if (! ((Directory) old).entries.isEmpty()) {
+                throw new ContextNotEmptyException(name.toString());
+            }
+            parent.entries.remove(last);
+        } finally {
+            treeLock.unlock();
+        }
+        fireEvent(NamingEvent.OBJECT_REMOVED, name, null, binding(name, old));
+    }
+
+    Directory resolveDirectory(final CompositeName name) throws NamingException {
+        final Object value = resolve(name);
+        if (! (value instanceof Directory)) {
+            throw new NotContextException(name.toString());
+        }
+        return (Directory) value;
+    }
+
+    /**
+     * Split each component of a composite name into the segments of the flat namespace of this server.
+     */
+    static CompositeName flatten(CompositeName name) throws InvalidNameException {
+        final CompositeName result = new CompositeName();
+        for (int i = 0; i < name.size(); i ++) {
+            final SimpleName simpleName = new SimpleName(name.get(i));
+            for (int j = 0; j < simpleName.size(); j ++) {
+                result.add(simpleName.get(j));
+            }
+        }
+        return result;
+    }
+
+    static String classNameOf(Object value) {
+        return value instanceof Directory ? Context.class.getName() : value.getClass().getName();
+    }
+
+    static Binding binding(CompositeName name, Object value) {
+        return new Binding(name.toString(), classNameOf(value), null, true);
+    }
+
+    void fireEvent(int type, CompositeName name, Binding newBinding, Binding oldBinding) {
+        for (ServerConnection connection : connections) {
+            connection.fireEvent(type, name, newBinding, oldBinding);
+        }
+    }
+
+    static final class Directory {
+        final Map<String, Object> entries = new ConcurrentHashMap<>();
+    }
+
+    static final class ListenerRegistration {
+        final CompositeName target;
+        final int scope;
+        final int mask;
+
+        ListenerRegistration(final CompositeName target, final int scope, final int mask) {
+            this.target = target;
+            this.scope = scope;
+            this.mask = mask;
+        }
+
+        boolean matches(final int type, final CompositeName name) {
+            if ((mask & 1 << type) == 0) {
+                return false;
+            }
+            switch (scope) {
+                case EventContext.OBJECT_SCOPE: return name.equals(target);
+                case EventContext.ONELEVEL_SCOPE: return name.size() == target.size() + 1 && name.startsWith(target);
+                default: return name.startsWith(target);
+            }
+        }
+    }
+
+    final class ServerConnection {
+        private final Channel channel;
+        private final Map<Integer, ListenerRegistration> listeners = new ConcurrentHashMap<>();
+        private final MarshallingConfiguration configuration = new MarshallingConfiguration();
+        private int version;
+        private int capabilities;
+
+        ServerConnection(final Channel channel) {
+            this.channel = channel;
+            configuration.setClassResolver(new ContextClassResolver());
+        }
+
+        void greet() {
+            final boolean offerCapabilities = capabilitiesEnabled && supports(2);
+            try (MessageOutputStream os = channel.writeMessage()) {
+                os.writeByte(versions.length);
+                for (int v : versions) {
+                    os.writeByte(v);
+                }
+                if (offerCapabilities) {
+                    os.writeByte(5);
+                    os.writeByte(Protocol.CAP_EVENTS);
+                    os.writeByte(Protocol.CAP_CLASS_TABLE);
+                    os.writeByte(Protocol.CAP_LOOKUP_BATCH);
+                    os.writeByte(Protocol.CAP_WALK);
+                    os.writeByte(Protocol.CAP_LIST_MATCHING);
+                }
+            } catch (IOException e) {
+                safeClose(channel);
+                return;
+            }
+            channel.receiveMessage(new Channel.Receiver() {
+                public void handleError(final Channel channel, final IOException error) {
+                    safeClose(channel);
+                }
+
+                public void handleEnd(final Channel channel) {
+                    safeClose(channel);
+                }
+
+                public void handleMessage(final Channel channel, final MessageInputStream message) {
+                    try (MessageInputStream mis = message) {
+                        for (byte b : initialBytes) {
+                            if (mis.readUnsignedByte() != (b & 0xff)) {
+                                throw new IOException("Invalid greeting");
+                            }
+                        }
+                        version = mis.readUnsignedByte();
+                        if (! supports(version)) {
+                            throw new IOException("Unsupported version " + version);
+                        }
+                        if (offerCapabilities && version == 2) {
+                            final int count = mis.readUnsignedByte();
+                            for (int i = 0; i < count; i ++) {
+                                capabilities |= 1 << mis.readUnsignedByte();
+                            }
+                        }
+                    } catch (IOException e) {
+                        safeClose(channel);
+                        return;
+                    }
+                    configuration.setVersion(version == 2 ? 4 : 2);
+                    if ((capabilities & 1 << Protocol.CAP_CLASS_TABLE) != 0) {
+                        configuration.setClassTable(new NamingClassTable(configuration.getClassResolver()));
+                    }
+                    connections.add(ServerConnection.this);
+                    channel.addCloseHandler((closed, exception) -> connections.remove(ServerConnection.this));
+                    channel.receiveMessage(new RequestReceiver());
+                }
+            });
+        }
+
+        boolean supports(int version) {
+            for (int v : versions) {
+                if (v == version) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int readId(final MessageInputStream is) throws IOException {
+            return version == 1 ? is.readInt() : is.readUnsignedShort();
+        }
+
+        CompositeName readName(final MessageInputStream is) throws IOException, NamingException {
+            if (version == 1) {
+                try (Unmarshaller unmarshaller = createUnmarshaller(is)) {
+                    return readName(unmarshaller);
+                }
+            }
+            return flatten(new CompositeName(is.readUTF()));
+        }
+
+        CompositeName readName(final Unmarshaller unmarshaller) throws IOException, NamingException {
+            if (unmarshaller.readUnsignedByte() != Protocol.P_NAME) {
+                throw new IOException("Expected a name");
+            }
+            try {
+                return flatten(NamingUtils.toCompositeName(unmarshaller.readObject(Name.class)));
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * Read a request and return the action which produces its response.
+         */
+        Response readRequest(final int command, final int id, final MessageInputStream is) throws IOException, NamingException {
+            switch (command) {
+                case Protocol.CMD_LOOKUP:
+                case Protocol.CMD_LOOKUP_LINK: {
+                    return lookup(id, readName(is));
+                }
+                case Protocol.CMD_BIND:
+                case Protocol.CMD_REBIND: {
+                    final CompositeName name;
+                    final Object value;
+                    try (Unmarshaller unmarshaller = createUnmarshaller(is)) {
+                        if (version == 1) {
+                            name = readName(unmarshaller);
+                            if (unmarshaller.readUnsignedByte() != Protocol.P_OBJECT) {
+                                throw new IOException("Expected an object");
+                            }
+                        } else {
+                            name = flatten(new CompositeName(unmarshaller.readUTF()));
+                        }
+                        value = unmarshaller.readObject();
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException(e);
+                    }
+                    return () -> {
+                        bind(name, value, command == Protocol.CMD_REBIND);
+                        return success(id);
+                    };
+                }
+                case Protocol.CMD_UNBIND: {
+                    final CompositeName name = readName(is);
+                    return () -> {
+                        unbind(name);
+                        return success(id);
+                    };
+                }
+                case Protocol.CMD_RENAME: {
+                    final CompositeName oldName, newName;
+                    if (version == 1) {
+                        try (Unmarshaller unmarshaller = createUnmarshaller(is)) {
+                            oldName = readName(unmarshaller);
+                            newName = readName(unmarshaller);
+                        }
+                    } else {
+                        oldName = flatten(new CompositeName(is.readUTF()));
+                        newName = flatten(new CompositeName(is.readUTF()));
+                    }
+                    return () -> {
+                        rename(oldName, newName);
+                        return success(id);
+                    };
+                }
+                case Protocol.CMD_CREATE_SUBCTX: {
+                    final CompositeName name = readName(is);
+                    return () -> {
+                        createSubcontext(name);
+                        return success(id);
+                    };
+                }
+                case Protocol.CMD_DESTROY_SUBCTX: {
+                    final CompositeName name = readName(is);
+                    return () -> {
+                        destroySubcontext(name);
+                        return success(id);
+                    };
+                }
+                case Protocol.CMD_LIST:
+                case Protocol.CMD_LIST_MATCHING: {
+                    if (command == Protocol.CMD_LIST_MATCHING && (capabilities & 1 << Protocol.CAP_LIST_MATCHING) == 0) {
+                        break;
+                    }
+                    final CompositeName name = readName(is);
+                    final String pattern = command == Protocol.CMD_LIST_MATCHING ? is.readUTF() : null;
+                    return () -> {
+                        final List<Map.Entry<String, Object>> entries = entriesOf(resolveDirectory(name), pattern);
+                        return os -> {
+                            startResponse(os, id, Protocol.SUCCESS);
+                            if (version == 1) {
+                                os.writeByte(Protocol.P_LIST);
+                                os.writeInt(entries.size());
+                                try (Marshaller marshaller = createMarshaller(os)) {
+                                    for (Map.Entry<String, Object> entry : entries) {
+                                        marshaller.writeObject(new NameClassPair(entry.getKey(), classNameOf(entry.getValue()), true));
+                                    }
+                                }
+                            } else {
+                                os.writeInt(entries.size());
+                                for (Map.Entry<String, Object> entry : entries) {
+                                    os.writeUTF(entry.getKey());
+                                    os.writeUTF(classNameOf(entry.getValue()));
+                                }
+                            }
+                        };
+                    };
+                }
+                case Protocol.CMD_LIST_BINDINGS:
+                case Protocol.CMD_LIST_BINDINGS_MATCHING: {
+                    if (command == Protocol.CMD_LIST_BINDINGS_MATCHING && (capabilities & 1 << Protocol.CAP_LIST_MATCHING) == 0) {
+                        break;
+                    }
+                    final CompositeName name = readName(is);
+                    final String pattern = command == Protocol.CMD_LIST_BINDINGS_MATCHING ? is.readUTF() : null;
+                    return () -> {
+                        final List<Map.Entry<String, Object>> entries = entriesOf(resolveDirectory(name), pattern);
+                        return os -> {
+                            startResponse(os, id, Protocol.SUCCESS);
+                            if (version == 1) {
+                                os.writeByte(Protocol.P_LIST);
+                            }
+                            os.writeInt(entries.size());
+                            try (Marshaller marshaller = createMarshaller(os)) {
+                                for (Map.Entry<String, Object> entry : entries) {
+                                    if (entry.getValue() instanceof Directory) {
+                                        marshaller.writeByte(Protocol.P_CONTEXT);
+                                        marshaller.writeUTF(entry.getKey());
+                                    } else {
+                                        marshaller.writeByte(Protocol.P_OBJECT);
+                                        marshaller.writeObject(new Binding(entry.getKey(), entry.getValue(), true));
+                                    }
+                                }
+                            }
+                        };
+                    };
+                }
+                case Protocol.CMD_WALK: {
+                    if ((capabilities & 1 << Protocol.CAP_WALK) == 0) {
+                        break;
+                    }
+                    final CompositeName name = flatten(new CompositeName(is.readUTF()));
+                    final int maxDepth = is.readInt();
+                    return () -> {
+                        final List<Map.Entry<String, String>> entries = new ArrayList<>();
+                        walk(resolveDirectory(name), new CompositeName(), maxDepth <= 0 ? Integer.MAX_VALUE : maxDepth, entries);
+                        // all but the last chunk are sent as partial responses
+                        int start = 0;
+                        while (entries.size() - start > WALK_CHUNK_SIZE) {
+                            write(walkChunk(id, Protocol.PARTIAL, entries.subList(start, start + WALK_CHUNK_SIZE)));
+                            start += WALK_CHUNK_SIZE;
+                        }
+                        return walkChunk(id, Protocol.SUCCESS, entries.subList(start, entries.size()));
+                    };
+                }
+                case Protocol.CMD_ADD_LISTENER: {
+                    if ((capabilities & 1 << Protocol.CAP_EVENTS) == 0) {
+                        break;
+                    }
+                    final CompositeName name = flatten(new CompositeName(is.readUTF()));
+                    final int scope = is.readUnsignedByte();
+                    final int mask = is.readUnsignedByte();
+                    return () -> {
+                        listeners.put(Integer.valueOf(id), new ListenerRegistration(name, scope, mask));
+                        return os -> {
+                            startResponse(os, id, Protocol.PARTIAL);
+                            os.writeByte(Protocol.P_VOID);
+                        };
+                    };
+                }
+                case Protocol.CMD_REMOVE_LISTENER: {
+                    if ((capabilities & 1 << Protocol.CAP_EVENTS) == 0) {
+                        break;
+                    }
+                    return () -> {
+                        listeners.remove(Integer.valueOf(id));
+                        return success(id);
+                    };
+                }
+            }
+            throw new OperationNotSupportedException("Unknown command " + command);
+        }
+
+        List<Map.Entry<String, Object>> entriesOf(final Directory directory, final String pattern) {
+            final List<Map.Entry<String, Object>> entries = new ArrayList<>();
+            for (Map.Entry<String, Object> entry : directory.entries.entrySet()) {
+                if (pattern == null || SimpleNamePermissions.matchesSegment(pattern, entry.getKey())) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        void walk(final Directory directory, final CompositeName relativeName, final int remainingDepth, final List<Map.Entry<String, String>> entries) throws NamingException {
+            for (Map.Entry<String, Object> entry : directory.entries.entrySet()) {
+                final CompositeName entryName = (CompositeName) ((CompositeName) relativeName.clone()).add(entry.getKey());
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(entryName.toString(), classNameOf(entry.getValue())));
+                if (remainingDepth > 1 && entry.getValue() instanceof Directory) {
+                    walk((Directory) entry.getValue(), entryName, remainingDepth - 1, entries);
+                }
+            }
+        }
+
+        Body walkChunk(final int id, final int result, final List<Map.Entry<String, String>> entries) {
+            final List<Map.Entry<String, String>> chunk = new ArrayList<>(entries);
+            return os -> {
+                startResponse(os, id, result);
+                os.writeByte(Protocol.P_LIST);
+                os.writeInt(chunk.size());
+                for (Map.Entry<String, String> entry : chunk) {
+                    os.writeUTF(entry.getKey());
+                    os.writeUTF(entry.getValue());
+                }
+            };
+        }
+
+        Response lookup(final int id, final CompositeName name) {
+            return () -> {
+                final Object value = resolve(name);
+                return os -> {
+                    startResponse(os, id, Protocol.SUCCESS);
+                    if (value instanceof Directory) {
+                        os.writeByte(Protocol.P_CONTEXT);
+                    } else {
+                        os.writeByte(Protocol.P_OBJECT);
+                        try (Marshaller marshaller = createMarshaller(os)) {
+                            marshaller.writeObject(value);
+                        }
+                    }
+                };
+            };
+        }
+
+        /**
+         * Read a batch of lookups, scheduling the response to each.
+         */
+        void readLookupBatch(final MessageInputStream is) throws IOException {
+            final int count = is.readUnsignedShort();
+            for (int i = 0; i < count; i ++) {
+                final int id = readId(is);
+                is.readBoolean();
+                Response response;
+                try {
+                    response = lookup(id, flatten(new CompositeName(is.readUTF())));
+                } catch (NamingException e) {
+                    response = () -> {
+                        throw e;
+                    };
+                }
+                final Response request = response;
+                schedule(() -> respond(id, request));
+            }
+        }
+
+        void respond(final int id, final Response response) {
+            final byte[] bytes;
+            try {
+                bytes = toBytes(response.perform());
+            } catch (NamingException e) {
+                writeFailure(id, e);
+                return;
+            } catch (IOException e) {
+                // the response could not be marshalled; report it instead of sending a truncated message
+                final NamingException failure = new NamingException(e.toString());
+                failure.setRootCause(e);
+                writeFailure(id, failure);
+                return;
+            }
+            write(bytes);
+        }
+
+        void write(final Body body) {
+            final byte[] bytes;
+            try {
+                bytes = toBytes(body);
+            } catch (IOException e) {
+                safeClose(channel);
+                return;
+            }
+            write(bytes);
+        }
+
+        private void write(final byte[] bytes) {
+            try (MessageOutputStream os = channel.writeMessage()) {
+                os.write(bytes);
+            } catch (IOException e) {
+                safeClose(channel);
+            }
+        }
+
+        private byte[] toBytes(final Body body) throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream os = new DataOutputStream(bytes)) {
+                body.writeTo(os);
+            }
+            return bytes.toByteArray();
+        }
+
+        Body success(final int id) {
+            return os -> startResponse(os, id, Protocol.SUCCESS);
+        }
+
+        void writeFailure(final int id, final NamingException exception) {
+            write(os -> {
+                startResponse(os, id, Protocol.FAILURE);
+                os.writeByte(Protocol.P_EXCEPTION);
+                try (Marshaller marshaller = createMarshaller(os)) {
+                    marshaller.writeObject(exception);
+                }
+            });
+        }
+
+        void startResponse(final DataOutputStream os, final int id, final int result) throws IOException {
+            if (version == 1) {
+                os.writeInt(id);
+            } else {
+                os.writeShort(id);
+            }
+            os.writeByte(result);
+        }
+
+        void fireEvent(final int type, final CompositeName name, final Binding newBinding, final Binding oldBinding) {
+            for (Map.Entry<Integer, ListenerRegistration> entry : listeners.entrySet()) {
+                final ListenerRegistration registration = entry.getValue();
+                if (registration.matches(type, name) || oldBinding != null && registration.matches(type, toName(oldBinding))) {
+                    write(os -> {
+                        startResponse(os, entry.getKey().intValue(), Protocol.PARTIAL);
+                        os.writeByte(Protocol.P_EVENT);
+                        os.writeInt(1);
+                        os.writeByte(type);
+                        writeBinding(os, newBinding);
+                        writeBinding(os, oldBinding);
+                    });
+                }
+            }
+        }
+
+        private CompositeName toName(Binding binding) {
+            try {
+                return new CompositeName(binding.getName());
+            } catch (InvalidNameException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeBinding(final DataOutputStream os, final Binding binding) throws IOException {
+            if (binding == null) {
+                os.writeBoolean(false);
+            } else {
+                os.writeBoolean(true);
+                os.writeUTF(binding.getName());
+                os.writeUTF(binding.getClassName());
+            }
+        }
+
+        Unmarshaller createUnmarshaller(final MessageInputStream is) throws IOException {
+            final Unmarshaller unmarshaller = Marshalling.getProvidedMarshallerFactory("river").createUnmarshaller(configuration);
+            unmarshaller.start(Marshalling.createByteInput(is));
+            return unmarshaller;
+        }
+
+        Marshaller createMarshaller(final DataOutputStream os) throws IOException {
+            final Marshaller marshaller = Marshalling.getProvidedMarshallerFactory("river").createMarshaller(configuration);
+            marshaller.start(Marshalling.createByteOutput(os));
+            return marshaller;
+        }
+
+        final class RequestReceiver implements Channel.Receiver {
+            public void handleError(final Channel channel, final IOException error) {
+                safeClose(channel);
+            }
+
+            public void handleEnd(final Channel channel) {
+                safeClose(channel);
+            }
+
+            public void handleMessage(final Channel channel, final MessageInputStream message) {
+                final int id;
+                Response response;
+                try (MessageInputStream mis = message) {
+                    final int command = mis.readUnsignedByte();
+                    requestCount.incrementAndGet();
+                    if (command == Protocol.CMD_LOOKUP_BATCH && (capabilities & 1 << Protocol.CAP_LOOKUP_BATCH) != 0) {
+                        readLookupBatch(mis);
+                        channel.receiveMessage(this);
+                        return;
+                    }
+                    id = readId(mis);
+                    try {
+                        response = readRequest(command, id, mis);
+                    } catch (NamingException e) {
+                        response = () -> {
+                            throw e;
+                        };
+                    }
+                } catch (IOException e) {
+                    safeClose(channel);
+                    return;
+                }
+                final Response request = response;
+                schedule(() -> respond(id, request));
+                channel.receiveMessage(this);
+            }
+        }
+    }
+
+    void schedule(Runnable task) {
+        final long latencyNanos = this.latencyNanos;
+        if (latencyNanos > 0) {
+            executor.schedule(task, latencyNanos, TimeUnit.NANOSECONDS);
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    interface Response {
+        /**
+         * Perform the requested operation.
+         *
+         * @return the writer of the response message
+         * @throws NamingException if the operation failed
+         */
+        Body perform() throws NamingException;
+    }
+
+    interface Body {
+        void writeTo(DataOutputStream os) throws IOException;
+    }
+}
@@ -0,0 +1,176 @@
+package org.wildfly.naming.client.remote;
+
+import static org.xnio.IoUtils.safeClose;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.event.EventContext;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+
+import org.jboss.remoting3.Channel;
+import org.jboss.remoting3.Endpoint;
+import org.jboss.remoting3.MessageInputStream;
+import org.jboss.remoting3.MessageOutputStream;
+import org.jboss.remoting3.OpenListener;
+import org.jboss.remoting3.Registration;
+import org.jboss.remoting3.spi.NetworkServerProvider;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wildfly.naming.client.NamingProvider;
+import org.wildfly.naming.client.util.FastHashtable;
+import org.wildfly.security.auth.permission.LoginPermission;
+import org.wildfly.security.auth.realm.SimpleMapBackedSecurityRealm;
+import org.wildfly.security.auth.server.MechanismConfiguration;
+import org.wildfly.security.auth.server.MechanismConfigurationSelector;
+import org.wildfly.security.auth.server.SaslAuthenticationFactory;
+import org.wildfly.security.auth.server.SecurityDomain;
+import org.wildfly.security.permission.PermissionVerifier;
+import org.wildfly.security.sasl.anonymous.AnonymousServerFactory;
+import org.xnio.OptionMap;
+import org.xnio.StreamConnection;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * A round trip of a naming listener registration against a minimal server which acknowledges the registration, pushes
+ * one event, and acknowledges the removal.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class RemoteListenerTestCase {
+
+    @Test
+    public void testListenerRoundTrip() throws Exception {
+        final BlockingQueue<String> removals = new ArrayBlockingQueue<>(1);
+        try (Endpoint endpoint = Endpoint.builder().setEndpointName("listener-server").build()) {
+            final Registration registration = endpoint.registerService("naming", new OpenListener() {
+                public void channelOpened(final Channel channel) {
+                    serve(channel, removals);
+                }
+
+                public void registrationTerminated() {
+                }
+            }, OptionMap.EMPTY);
+            final SecurityDomain.Builder domainBuilder = SecurityDomain.builder();
+            domainBuilder.addRealm("default", new SimpleMapBackedSecurityRealm()).build();
+            domainBuilder.setDefaultRealmName("default");
+            domainBuilder.setPermissionMapper((permissionMappable, roles) -> PermissionVerifier.from(new LoginPermission()));
+            final SaslAuthenticationFactory authenticationFactory = SaslAuthenticationFactory.builder()
+                .setSecurityDomain(domainBuilder.build())
+                .setMechanismConfigurationSelector(MechanismConfigurationSelector.constantSelector(MechanismConfiguration.EMPTY))
+                .setFactory(new AnonymousServerFactory())
+                .build();
+            final NetworkServerProvider serverProvider = endpoint.getConnectionProviderInterface("remote", NetworkServerProvider.class);
+            final AcceptingChannel<StreamConnection> server = serverProvider.createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), OptionMap.EMPTY, authenticationFactory, null);
+            try {
+                final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+                final URI uri = URI.create("remote://" + address.getHostString() + ":" + address.getPort());
+                final NamingProvider provider = new RemoteNamingProviderFactory().createProvider(uri, new FastHashtable<>());
+                final EventContext context = (EventContext) new RemoteNamingContextFactory().createRootContext(provider, null, new FastHashtable<>());
+                final BlockingQueue<NamingEvent> events = new ArrayBlockingQueue<>(10);
+                final NamespaceChangeListener listener = new NamespaceChangeListener() {
+                    public void objectAdded(final NamingEvent evt) {
+                        events.add(evt);
+                    }
+
+                    public void objectRemoved(final NamingEvent evt) {
+                    }
+
+                    public void objectRenamed(final NamingEvent evt) {
+                    }
+
+                    public void namingExceptionThrown(final NamingExceptionEvent evt) {
+                    }
+                };
+                context.addNamingListener("events", EventContext.ONELEVEL_SCOPE, listener);
+                final NamingEvent event = events.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(event);
+                Assert.assertEquals(NamingEvent.OBJECT_ADDED, event.getType());
+                Assert.assertEquals("events/one", event.getNewBinding().getName());
+                Assert.assertEquals(String.class.getName(), event.getNewBinding().getClassName());
+                context.removeNamingListener(listener);
+                Assert.assertEquals("removed", removals.poll(10, TimeUnit.SECONDS));
+                context.close();
+                provider.close();
+            } finally {
+                safeClose(server);
+                safeClose(registration);
+            }
+        }
+    }
+
+    /**
+     * Speak the version 2 protocol, offering the events capability, on the given channel.
+     */
+    static void serve(final Channel channel, final BlockingQueue<String> removals) {
+        try (MessageOutputStream os = channel.writeMessage()) {
+            os.writeByte(1);
+            os.writeByte(2);
+            os.writeByte(1);
+            os.writeByte(Protocol.CAP_EVENTS);
+        } catch (IOException e) {
+            safeClose(channel);
+            return;
+        }
+        channel.receiveMessage(new Channel.Receiver() {
+            private boolean greeted;
+
+            public void handleError(final Channel channel, final IOException error) {
+                safeClose(channel);
+            }
+
+            public void handleEnd(final Channel channel) {
+                safeClose(channel);
+            }
+
+            public void handleMessage(final Channel channel, final MessageInputStream message) {
+                try (MessageInputStream is = message) {
+                    if (! greeted) {
+                        // the client's greeting and capability acknowledgement
+                        greeted = true;
+                        while (is.read() != -1) {
+                        }
+                    } else {
+                        final int command = is.readUnsignedByte();
+                        final int id = is.readUnsignedShort();
+                        if (command == Protocol.CMD_ADD_LISTENER) {
+                            try (MessageOutputStream os = channel.writeMessage()) {
+                                os.writeShort(id);
+                                os.writeByte(Protocol.PARTIAL);
+                                os.writeByte(Protocol.P_VOID);
+                            }
+                            try (MessageOutputStream os = channel.writeMessage()) {
+                                os.writeShort(id);
+                                os.writeByte(Protocol.PARTIAL);
+                                os.writeByte(Protocol.P_EVENT);
+                                os.writeInt(1);
+                                os.writeByte(NamingEvent.OBJECT_ADDED);
+                                os.writeBoolean(true);
+                                os.writeUTF("events/one");
+                                os.writeUTF(String.class.getName());
+                                os.writeBoolean(false);
+                            }
+                        } else if (command == Protocol.CMD_REMOVE_LISTENER) {
+                            try (MessageOutputStream os = channel.writeMessage()) {
+                                os.writeShort(id);
+                                os.writeByte(Protocol.SUCCESS);
+                            }
+                            removals.add("removed");
+                        }
+                    }
+                } catch (IOException e) {
+                    safeClose(channel);
+                    return;
+                }
+                channel.receiveMessage(this);
+            }
+        });
+    }
+}
@@ -0,0 +1,718 @@
+package org.wildfly.naming.client.remote;
+
+import java.io.NotSerializableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.Binding;
+import javax.naming.CommunicationException;
+import javax.naming.CompositeName;
+import javax.naming.Context;
+import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.StringRefAddr;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+
+import org.jboss.remoting3.Connection;
+import org.jboss.remoting3.Endpoint;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.naming.client.CloseableNamingEnumeration;
+import org.wildfly.naming.client.ScatterGatherContext;
+import org.wildfly.naming.client.ScatterGatherContextFactory;
+import org.wildfly.naming.client.WildFlyInitialContextFactory;
+import org.wildfly.naming.client.WildFlyRootContext;
+import org.wildfly.naming.client.util.FastHashtable;
+import org.wildfly.security.auth.client.AuthenticationContext;
+
+/**
+ * End-to-end tests of the remote naming client against the {@link ReferenceNamingServer}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class RemoteNamingTestCase {
+    private static ReferenceNamingServer versionOneServer;
+    private static ReferenceNamingServer versionTwoServer;
+
+    @BeforeClass
+    public static void startServers() throws Exception {
+        versionOneServer = new ReferenceNamingServer(1);
+        versionOneServer.populate("data", 3, 16);
+        versionOneServer.start();
+        versionTwoServer = new ReferenceNamingServer(1, 2);
+        versionTwoServer.populate("data", 3, 16);
+        versionTwoServer.setLatency(1, TimeUnit.MILLISECONDS);
+        versionTwoServer.start();
+    }
+
+    @AfterClass
+    public static void stopServers() {
+        versionOneServer.close();
+        versionTwoServer.close();
+    }
+
+    private static Context connect(ReferenceNamingServer server) throws NamingException {
+        final Hashtable<String, Object> env = new Hashtable<>();
+        env.put(Context.PROVIDER_URL, server.getUri().toString());
+        return new WildFlyInitialContextFactory().getInitialContext(env);
+    }
+
+    @Test
+    public void testOperationsVersionOne() throws Exception {
+        testOperations(connect(versionOneServer));
+    }
+
+    @Test
+    public void testOperationsVersionTwo() throws Exception {
+        testOperations(connect(versionTwoServer));
+    }
+
+    private void testOperations(Context context) throws Exception {
+        Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-1")).length);
+        context.bind("greeting", "hello");
+        Assert.assertEquals("hello", context.lookup("greeting"));
+        context.bind("reference", new Reference("java.lang.String", new StringRefAddr("value", "hello")));
+        Assert.assertEquals("hello", ((Reference) context.lookup("reference")).get("value").getContent());
+        context.unbind("reference");
+        context.rebind("greeting", "goodbye");
+        Assert.assertEquals("goodbye", context.lookup("greeting"));
+        context.rename("greeting", "farewell");
+        Assert.assertEquals("goodbye", context.lookup("farewell"));
+        try {
+            context.lookup("greeting");
+            Assert.fail("Expected NameNotFoundException");
+        } catch (NameNotFoundException expected) {
+        }
+        context.createSubcontext("data/sub");
+        Assert.assertTrue(context.lookup("data/sub") instanceof Context);
+
+        final List<String> names = new ArrayList<>();
+        final NamingEnumeration<NameClassPair> list = context.list("data");
+        while (list.hasMore()) {
+            names.add(list.next().getName());
+        }
+        Collections.sort(names);
+        Assert.assertEquals(Arrays.asList("entry-0", "entry-1", "entry-2", "sub"), names);
+
+        int contexts = 0, objects = 0;
+        final NamingEnumeration<Binding> bindings = context.listBindings("data");
+        while (bindings.hasMore()) {
+            if (bindings.next().getObject() instanceof Context) {
+                contexts ++;
+            } else {
+                objects ++;
+            }
+        }
+        Assert.assertEquals(1, contexts);
+        Assert.assertEquals(3, objects);
+
+        context.destroySubcontext("data/sub");
+        context.unbind("farewell");
+        try {
+            context.lookup("farewell");
+            Assert.fail("Expected NameNotFoundException");
+        } catch (NameNotFoundException expected) {
+        }
+        context.close();
+    }
+
+    @Test
+    public void testLazyLookup() throws Exception {
+        final Hashtable<String, Object> env = new Hashtable<>();
+        env.put(Context.PROVIDER_URL, versionTwoServer.getUri().toString());
+        env.put(RemoteNamingProviderFactory.LAZY_LOOKUP, "true");
+        final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+        final Object result = context.lookup("data/entry-2");
+        Assert.assertTrue(result instanceof LazyObject);
+        final LazyObject lazyObject = (LazyObject) result;
+        Assert.assertFalse(lazyObject.isResolved());
+        Assert.assertEquals(16, ((byte[]) lazyObject.get()).length);
+        Assert.assertTrue(lazyObject.isResolved());
+        Assert.assertSame(lazyObject.get(), lazyObject.get());
+        Assert.assertTrue(context.lookup("data") instanceof Context);
+        context.close();
+    }
+
+    @Test
+    public void testHedgedLookup() throws Exception {
+        try (ReferenceNamingServer slowServer = new ReferenceNamingServer()) {
+            slowServer.populate("data", 3, 16);
+            slowServer.setLatency(2, TimeUnit.SECONDS);
+            slowServer.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, slowServer.getUri().toString());
+            env.put(RemoteNamingProviderFactory.HEDGE_PROVIDER_URLS, versionTwoServer.getUri().toString());
+            env.put(RemoteNamingProviderFactory.HEDGE_MIN_DELAY, "20");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            final long start = System.nanoTime();
+            Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-0")).length);
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            context.close();
+        }
+    }
+
+    @Test
+    public void testFailedHedgeDoesNotWin() throws Exception {
+        try (ReferenceNamingServer slowServer = new ReferenceNamingServer()) {
+            // the hedge server does not have this name, so its response is a prompt failure
+            slowServer.bind("primary-only", "primary");
+            slowServer.setLatency(300, TimeUnit.MILLISECONDS);
+            slowServer.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, slowServer.getUri().toString());
+            env.put(RemoteNamingProviderFactory.HEDGE_PROVIDER_URLS, versionTwoServer.getUri().toString());
+            env.put(RemoteNamingProviderFactory.HEDGE_MIN_DELAY, "20");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                Assert.assertEquals("primary", context.lookup("primary-only"));
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testHedgedLookupTimeout() throws Exception {
+        try (ReferenceNamingServer slowServer = new ReferenceNamingServer()) {
+            slowServer.bind("primary-only", "primary");
+            slowServer.setLatency(2, TimeUnit.SECONDS);
+            slowServer.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, slowServer.getUri().toString());
+            env.put(RemoteNamingProviderFactory.HEDGE_PROVIDER_URLS, versionTwoServer.getUri().toString());
+            env.put(RemoteNamingProviderFactory.HEDGE_MIN_DELAY, "20");
+            env.put(RemoteNamingProviderFactory.INVOCATION_TIMEOUT, "300");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                final long start = System.nanoTime();
+                try {
+                    context.lookup("primary-only");
+                    Assert.fail("Expected CommunicationException");
+                } catch (CommunicationException expected) {
+                }
+                Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCoalescedLookup() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 3, 16);
+            server.setLatency(200, TimeUnit.MILLISECONDS);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            env.put(RemoteNamingProviderFactory.COALESCE_LOOKUPS, "true");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            // establish the connection first
+            context.lookup("data/entry-0");
+            final long before = server.getRequestCount();
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<Object>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i ++) {
+                    futures.add(executor.submit(() -> context.lookup("data/entry-1")));
+                }
+                final Set<Object> results = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (Future<Object> future : futures) {
+                    final Object result = future.get(10, TimeUnit.SECONDS);
+                    Assert.assertEquals(16, ((byte[]) result).length);
+                    results.add(result);
+                }
+                // each caller has its own copy
+                Assert.assertEquals(8, results.size());
+            } finally {
+                executor.shutdown();
+            }
+            Assert.assertTrue(server.getRequestCount() - before < 8);
+            context.close();
+        }
+    }
+
+    @Test
+    public void testCoalescedLookupFailure() throws Exception {
+        final ReferenceNamingServer server = new ReferenceNamingServer();
+        server.populate("data", 1, 16);
+        server.setLatency(500, TimeUnit.MILLISECONDS);
+        server.start();
+        final Hashtable<String, Object> env = new Hashtable<>();
+        env.put(Context.PROVIDER_URL, server.getUri().toString());
+        env.put(RemoteNamingProviderFactory.COALESCE_LOOKUPS, "true");
+        env.put(RemoteNamingProviderFactory.CIRCUIT_BREAKER_THRESHOLD, "2");
+        final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i ++) {
+                futures.add(executor.submit(() -> context.lookup("data/entry-0")));
+            }
+            Thread.sleep(200);
+            server.close();
+            for (Future<Object> future : futures) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                    Assert.fail("Expected CommunicationException");
+                } catch (ExecutionException expected) {
+                    Assert.assertTrue(expected.getCause() instanceof CommunicationException);
+                }
+            }
+            // only the shared lookup counted as a failure, so the circuit breaker lets this one try to connect
+            try {
+                context.lookup("data/entry-0");
+                Assert.fail("Expected CommunicationException");
+            } catch (CommunicationException expected) {
+                Assert.assertNotNull(expected.getCause());
+            }
+        } finally {
+            executor.shutdown();
+            context.close();
+        }
+    }
+
+    @Test
+    public void testCoalescedLookupTimeout() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 1, 16);
+            server.setLatency(2, TimeUnit.SECONDS);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            env.put(RemoteNamingProviderFactory.COALESCE_LOOKUPS, "true");
+            env.put(RemoteNamingProviderFactory.INVOCATION_TIMEOUT, "300");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final Future<Object> first = executor.submit(() -> context.lookup("data/entry-0"));
+                Thread.sleep(100);
+                final long start = System.nanoTime();
+                try {
+                    context.lookup("data/entry-0");
+                    Assert.fail("Expected CommunicationException");
+                } catch (CommunicationException expected) {
+                }
+                Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+                // the lookup which was waited for is not affected
+                Assert.assertEquals(16, ((byte[]) first.get(10, TimeUnit.SECONDS)).length);
+            } finally {
+                executor.shutdown();
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testBatchedLookup() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 8, 16);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            env.put(RemoteNamingProviderFactory.LOOKUP_BATCH_WINDOW, "50000");
+            env.put(RemoteNamingProviderFactory.LOOKUP_BATCH_SIZE, "8");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            // establish the connection first
+            context.lookup("data/entry-0");
+            final long before = server.getRequestCount();
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                final List<Future<Object>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i ++) {
+                    final String name = "data/entry-" + i;
+                    futures.add(executor.submit(() -> context.lookup(name)));
+                }
+                for (Future<Object> future : futures) {
+                    Assert.assertEquals(16, ((byte[]) future.get(10, TimeUnit.SECONDS)).length);
+                }
+                Assert.assertTrue(server.getRequestCount() - before < 8);
+                try {
+                    context.lookup("data/missing");
+                    Assert.fail("Expected NameNotFoundException");
+                } catch (NameNotFoundException expected) {
+                }
+            } finally {
+                executor.shutdown();
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testWalk() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 100, 16);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            final WildFlyRootContext context = (WildFlyRootContext) new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                context.createSubcontext("data/nested");
+                context.bind("data/nested/leaf", "value");
+                final long before = server.getRequestCount();
+                final Map<String, String> entries = new HashMap<>();
+                try (CloseableNamingEnumeration<NameClassPair> enumeration = context.walk("data", 0)) {
+                    while (enumeration.hasMore()) {
+                        final NameClassPair pair = enumeration.next();
+                        entries.put(pair.getName(), pair.getClassName());
+                    }
+                }
+                Assert.assertEquals(1, server.getRequestCount() - before);
+                Assert.assertEquals(102, entries.size());
+                Assert.assertEquals(Context.class.getName(), entries.get("nested"));
+                Assert.assertEquals(String.class.getName(), entries.get("nested/leaf"));
+                try (CloseableNamingEnumeration<NameClassPair> enumeration = context.walk("data", 1)) {
+                    int count = 0;
+                    while (enumeration.hasMore()) {
+                        Assert.assertFalse(enumeration.next().getName().contains("/"));
+                        count ++;
+                    }
+                    Assert.assertEquals(101, count);
+                }
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMatchingList() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 100, 16);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            final WildFlyRootContext context = (WildFlyRootContext) new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                final List<String> names = new ArrayList<>();
+                try (CloseableNamingEnumeration<NameClassPair> enumeration = context.listMatching("data", "entry-1*")) {
+                    while (enumeration.hasMore()) {
+                        names.add(enumeration.next().getName());
+                    }
+                }
+                Collections.sort(names);
+                Assert.assertEquals(Arrays.asList("entry-1", "entry-10", "entry-11", "entry-12", "entry-13", "entry-14", "entry-15", "entry-16", "entry-17", "entry-18", "entry-19"), names);
+                try (CloseableNamingEnumeration<Binding> enumeration = context.listBindingsMatching("data", "*-5")) {
+                    Assert.assertTrue(enumeration.hasMore());
+                    final Binding binding = enumeration.next();
+                    Assert.assertEquals("entry-5", binding.getName());
+                    Assert.assertEquals(16, ((byte[]) binding.getObject()).length);
+                    Assert.assertFalse(enumeration.hasMore());
+                }
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testUnmarshallableResponse() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.bind("unserializable", new Object());
+            server.bind("greeting", "hello");
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                try {
+                    context.lookup("unserializable");
+                    Assert.fail("Expected NamingException");
+                } catch (CommunicationException unexpected) {
+                    throw unexpected;
+                } catch (NamingException expected) {
+                    Assert.assertTrue(expected.getRootCause() instanceof NotSerializableException);
+                }
+                // the channel is still usable
+                Assert.assertEquals("hello", context.lookup("greeting"));
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testLocalFailureDoesNotTripCircuitBreaker() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 1, 16);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            env.put(RemoteNamingProviderFactory.CIRCUIT_BREAKER_THRESHOLD, "1");
+            env.put(RemoteNamingProviderFactory.RETRY_COUNT, "3");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                for (int i = 0; i < 2; i ++) {
+                    try {
+                        context.rebind("unserializable", new Object());
+                        Assert.fail("Expected CommunicationException");
+                    } catch (CommunicationException expected) {
+                        Assert.assertTrue(expected.getCause() instanceof NotSerializableException);
+                    }
+                }
+                Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-0")).length);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testOutstandingInvocationLimit() throws Exception {
+        try (ReferenceNamingServer server = new ReferenceNamingServer()) {
+            server.populate("data", 1, 16);
+            server.setLatency(500, TimeUnit.MILLISECONDS);
+            server.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            env.put(RemoteNamingProviderFactory.USE_SEPARATE_CONNECTION, "true");
+            env.put(RemoteNamingProviderFactory.MAX_OUTSTANDING_INVOCATIONS, "1");
+            env.put(RemoteNamingProviderFactory.INVOCATION_QUEUE_TIMEOUT, "0");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                // open the channel first, so that the limit is in place
+                Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-0")).length);
+                final Future<Object> first = executor.submit(() -> context.lookup("data/entry-0"));
+                Thread.sleep(200);
+                try {
+                    context.lookup("data/entry-0");
+                    Assert.fail("Expected ServiceUnavailableException");
+                } catch (ServiceUnavailableException expected) {
+                }
+                Assert.assertEquals(16, ((byte[]) first.get()).length);
+            } finally {
+                executor.shutdown();
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testScatterGatherProviders() throws Exception {
+        try (ReferenceNamingServer first = new ReferenceNamingServer(); ReferenceNamingServer second = new ReferenceNamingServer()) {
+            first.bind("shared", "first");
+            first.start();
+            second.bind("shared", "second");
+            second.bind("only-second", "second");
+            second.start();
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(ScatterGatherContextFactory.PROVIDER_URLS, first.getUri() + ", " + second.getUri());
+            env.put(ScatterGatherContextFactory.POLICY, ScatterGatherContext.Policy.HIGHEST_PRIORITY.name());
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            try {
+                Assert.assertEquals("first", context.lookup("shared"));
+                Assert.assertEquals("second", context.lookup("only-second"));
+                try {
+                    context.lookup("missing");
+                    Assert.fail("Expected NameNotFoundException");
+                } catch (NameNotFoundException expected) {
+                }
+                // modifications go to the provider with the highest priority
+                context.bind("added", "value");
+                Assert.assertEquals("value", context.lookup("added"));
+                Assert.assertEquals("value", first.resolve(new CompositeName("added")));
+                try {
+                    second.resolve(new CompositeName("added"));
+                    Assert.fail("Expected NameNotFoundException");
+                } catch (NameNotFoundException expected) {
+                }
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCachedLookup() throws Exception {
+        final ReferenceNamingServer server = new ReferenceNamingServer();
+        server.populate("data", 3, 16);
+        server.start();
+        final Hashtable<String, Object> env = new Hashtable<>();
+        env.put(Context.PROVIDER_URL, server.getUri().toString());
+        env.put(RemoteNamingProviderFactory.LOOKUP_CACHE_TTL, "200");
+        env.put(RemoteNamingProviderFactory.LOOKUP_CACHE_STALE_IF_ERROR, "60000");
+        final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+        try {
+            context.bind("cached", "one");
+            Assert.assertEquals("one", context.lookup("cached"));
+            final long before = server.getRequestCount();
+            Assert.assertEquals("one", context.lookup("cached"));
+            Assert.assertEquals(before, server.getRequestCount());
+            // binding through the same provider invalidates the entry
+            context.rebind("cached", "two");
+            Assert.assertEquals("two", context.lookup("cached"));
+            server.close();
+            Thread.sleep(300);
+            // expired, but the server cannot be reached
+            Assert.assertEquals("two", context.lookup("cached"));
+        } finally {
+            server.close();
+            context.close();
+        }
+    }
+
+    @Test
+    public void testPooledConnection() throws Exception {
+        final Hashtable<String, Object> env = new Hashtable<>();
+        env.put(Context.PROVIDER_URL, versionTwoServer.getUri().toString());
+        env.put(RemoteNamingProviderFactory.USE_CONNECTION_POOL, "true");
+        env.put(RemoteNamingProviderFactory.CONNECTION_POOL_MAX_PER_KEY, "1");
+        env.put(RemoteNamingProviderFactory.CONNECTION_POOL_IDLE_TIMEOUT, "0");
+        final ConnectionPool pool = RemoteNamingProviderFactory.getConnectionPool(Endpoint.getCurrent());
+        final Context first = new WildFlyInitialContextFactory().getInitialContext(env);
+        final Context second = new WildFlyInitialContextFactory().getInitialContext(env);
+        try {
+            first.bind("pooled", "value");
+            Assert.assertEquals("value", second.lookup("pooled"));
+            Assert.assertEquals(1, pool.size());
+        } finally {
+            first.close();
+            second.close();
+        }
+        pool.sweep();
+        Assert.assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void testReconnectAfterConnectionClose() throws Exception {
+        for (String attribute : Arrays.asList(RemoteNamingProviderFactory.USE_SEPARATE_CONNECTION, RemoteNamingProviderFactory.USE_CONNECTION_POOL)) {
+            final FastHashtable<String, Object> env = new FastHashtable<>();
+            env.put(Context.PROVIDER_URL, versionTwoServer.getUri().toString());
+            env.put(attribute, "true");
+            final RemoteNamingProvider provider = (RemoteNamingProvider) new RemoteNamingProviderFactory().createProvider(versionTwoServer.getUri(), env);
+            try {
+                final Context context = new RemoteContext(provider, "remote", env);
+                Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-0")).length);
+                final Connection connection = provider.getConnection();
+                connection.close();
+                // the provider learns that its connection has closed from a close handler, which runs asynchronously
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (provider.getConnection() == connection) {
+                    Assert.assertTrue(System.nanoTime() < deadline);
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals(16, ((byte[]) context.lookup("data/entry-0")).length);
+            } finally {
+                provider.close();
+            }
+        }
+    }
+
+    @Test
+    public void testProviderEviction() throws Exception {
+        final ReferenceNamingServer server = new ReferenceNamingServer();
+        server.start();
+        try {
+            final Hashtable<String, Object> env = new Hashtable<>();
+            env.put(Context.PROVIDER_URL, server.getUri().toString());
+            env.put(RemoteNamingProviderFactory.PROVIDER_IDLE_TIMEOUT, "0");
+            final Context context = new WildFlyInitialContextFactory().getInitialContext(env);
+            final ProviderMap map;
+            final int size;
+            try {
+                context.bind("evicted", "value");
+                map = RemoteNamingProviderFactory.getProviderMap(Endpoint.getCurrent());
+                size = map.size();
+                map.sweep();
+                // still referenced by the open context
+                Assert.assertEquals(size, map.size());
+            } finally {
+                context.close();
+            }
+            map.sweep();
+            Assert.assertEquals(size - 1, map.size());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testProviderReferenceReleasedOnce() throws Exception {
+        final ReferenceNamingServer server = new ReferenceNamingServer();
+        server.start();
+        try {
+            final FastHashtable<String, Object> env = new FastHashtable<>();
+            env.put(RemoteNamingProviderFactory.PROVIDER_IDLE_TIMEOUT, "0");
+            final Endpoint endpoint = Endpoint.getCurrent();
+            final AuthenticationContext authenticationContext = AuthenticationContext.captureCurrent();
+            final RemoteNamingProvider first = RemoteNamingProviderFactory.getManagedProvider(endpoint, server.getUri(), authenticationContext, env);
+            final RemoteNamingProvider second = RemoteNamingProviderFactory.getManagedProvider(endpoint, server.getUri(), authenticationContext, env);
+            Assert.assertSame(first.getLookupCache(), second.getLookupCache());
+            final ProviderMap map = RemoteNamingProviderFactory.getProviderMap(endpoint);
+            final int size = map.size();
+            first.close();
+            first.close();
+            map.sweep();
+            // still referenced by the second reference
+            Assert.assertEquals(size, map.size());
+            second.close();
+            map.sweep();
+            Assert.assertEquals(size - 1, map.size());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testListener() throws Exception {
+        final EventContext context = (EventContext) connect(versionTwoServer);
+        final BlockingQueue<NamingEvent> events = new ArrayBlockingQueue<>(10);
+        final NamespaceChangeListener listener = new NamespaceChangeListener() {
+            public void objectAdded(final NamingEvent evt) {
+                events.add(evt);
+            }
+
+            public void objectRemoved(final NamingEvent evt) {
+                events.add(evt);
+            }
+
+            public void objectRenamed(final NamingEvent evt) {
+                events.add(evt);
+            }
+
+            public void namingExceptionThrown(final NamingExceptionEvent evt) {
+            }
+        };
+        context.createSubcontext("events");
+        context.addNamingListener("events", EventContext.ONELEVEL_SCOPE, listener);
+        context.bind("ignored", "x");
+        context.bind("events/one", "x");
+        NamingEvent event = events.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(event);
+        Assert.assertEquals(NamingEvent.OBJECT_ADDED, event.getType());
+        Assert.assertEquals("events/one", event.getNewBinding().getName());
+        context.unbind("events/one");
+        event = events.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(event);
+        Assert.assertEquals(NamingEvent.OBJECT_REMOVED, event.getType());
+        context.removeNamingListener(listener);
+        context.bind("events/two", "x");
+        Assert.assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+        context.close();
+    }
+}
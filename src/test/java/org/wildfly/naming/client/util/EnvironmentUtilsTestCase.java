@@ -0,0 +1,30 @@
+package org.wildfly.naming.client.util;
+
+import javax.naming.Context;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wildfly.security.auth.server.IdentityCredentials;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class EnvironmentUtilsTestCase {
+
+    @Test
+    public void testParsedCredentials() {
+        final FastHashtable<String, Object> env = new FastHashtable<>();
+        Assert.assertNull(EnvironmentUtils.getSecurityCredentials(env));
+        env.put(Context.SECURITY_CREDENTIALS, "secret");
+        final IdentityCredentials credentials = EnvironmentUtils.getSecurityCredentials(env);
+        Assert.assertNotNull(credentials);
+        Assert.assertSame(credentials, EnvironmentUtils.getSecurityCredentials(env));
+        env.put(Context.SECURITY_CREDENTIALS, "other");
+        Assert.assertNotSame(credentials, EnvironmentUtils.getSecurityCredentials(env));
+        final IdentityCredentials other = EnvironmentUtils.getSecurityCredentials(env);
+        EnvironmentUtils.environmentChanged(env, Context.SECURITY_CREDENTIALS);
+        Assert.assertNotSame(other, EnvironmentUtils.getSecurityCredentials(env));
+        env.remove(Context.SECURITY_CREDENTIALS);
+        Assert.assertNull(EnvironmentUtils.getSecurityCredentials(env));
+    }
+}
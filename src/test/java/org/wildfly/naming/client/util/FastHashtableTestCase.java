@@ -0,0 +1,78 @@
+package org.wildfly.naming.client.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class FastHashtableTestCase {
+
+    @Test
+    public void testCopyOnWrite() {
+        final FastHashtable<String, Object> original = new FastHashtable<>();
+        original.put("a", "1");
+        original.put("b", "2");
+        final FastHashtable<String, Object> copy = new FastHashtable<>(original);
+        copy.put("a", "changed");
+        copy.remove("b");
+        Assert.assertEquals("1", original.get("a"));
+        Assert.assertEquals("2", original.get("b"));
+        Assert.assertEquals("changed", copy.get("a"));
+        Assert.assertFalse(copy.containsKey("b"));
+        Assert.assertEquals(1, copy.size());
+        Assert.assertNull(copy.putIfAbsent("c", "3"));
+        Assert.assertEquals("3", copy.putIfAbsent("c", "4"));
+        Assert.assertFalse(copy.remove("c", "4"));
+        Assert.assertTrue(copy.replace("c", "3", "5"));
+        Assert.assertEquals("5", copy.get("c"));
+    }
+
+    @Test
+    public void testGrowth() {
+        final FastHashtable<String, Object> table = new FastHashtable<>();
+        for (int i = 0; i < FastHashtable.MAX_COMPACT_SIZE * 2; i ++) {
+            table.put("key" + i, Integer.valueOf(i));
+        }
+        final FastHashtable<String, Object> copy = table.clone();
+        for (int i = 0; i < FastHashtable.MAX_COMPACT_SIZE * 2; i ++) {
+            Assert.assertEquals(Integer.valueOf(i), copy.get("key" + i));
+        }
+        copy.keySet().remove("key0");
+        Assert.assertFalse(copy.containsKey("key0"));
+        Assert.assertTrue(table.containsKey("key0"));
+    }
+
+    @Test
+    public void testViews() {
+        final FastHashtable<String, Object> table = new FastHashtable<>();
+        table.put("a", "1");
+        table.entrySet().removeIf(e -> e.getKey().equals("a"));
+        Assert.assertTrue(table.isEmpty());
+        table.put("b", "2");
+        Assert.assertEquals("2", table.get("b"));
+        Assert.assertEquals("b", table.keys().nextElement());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        final FastHashtable<String, Object> table = new FastHashtable<>();
+        table.put("a", "1");
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(os)) {
+            oos.writeObject(table);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(os.toByteArray()))) {
+            final FastHashtable<String, Object> read = (FastHashtable<String, Object>) ois.readObject();
+            Assert.assertEquals("1", read.get("a"));
+            read.put("b", "2");
+            Assert.assertEquals(2, read.size());
+        }
+    }
+}
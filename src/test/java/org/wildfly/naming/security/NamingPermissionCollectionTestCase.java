@@ -0,0 +1,92 @@
+package org.wildfly.naming.security;
+
+import java.security.PermissionCollection;
+
+import javax.naming.InvalidNameException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wildfly.naming.client.SimpleName;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class NamingPermissionCollectionTestCase {
+
+    @Test
+    public void testWildcards() throws InvalidNameException {
+        final PermissionCollection collection = collectionOf(
+            new TestPermission("java:global/app/*/Remote", "lookup"),
+            new TestPermission("java:jboss/exported/-", "lookup,list"),
+            new TestPermission("ejb/foo", "bind")
+        );
+        Assert.assertTrue(collection.implies(new TestPermission("java:global/app/mod/Remote", "lookup")));
+        Assert.assertFalse(collection.implies(new TestPermission("java:global/app/mod/Remote", "bind")));
+        Assert.assertFalse(collection.implies(new TestPermission("java:global/app/mod/other/Remote", "lookup")));
+        Assert.assertTrue(collection.implies(new TestPermission("java:jboss/exported/a/b/c", "list")));
+        Assert.assertTrue(collection.implies(new TestPermission("java:jboss/exported/-", "lookup")));
+        Assert.assertFalse(collection.implies(new TestPermission("java:jboss/exported", "lookup")));
+        Assert.assertTrue(collection.implies(new TestPermission("ejb/foo", "bind")));
+        Assert.assertFalse(collection.implies(new TestPermission("ejb/*", "bind")));
+        Assert.assertFalse(collection.implies(new TestPermission("ejb", "")));
+        Assert.assertTrue(collection.implies(new TestPermission("ejb/foo", "")));
+    }
+
+    @Test
+    public void testActionsCombined() throws InvalidNameException {
+        final PermissionCollection collection = collectionOf(
+            new TestPermission("a/*", "lookup"),
+            new TestPermission("a/b", "bind")
+        );
+        Assert.assertTrue(collection.implies(new TestPermission("a/b", "lookup,bind")));
+        Assert.assertFalse(collection.implies(new TestPermission("a/c", "lookup,bind")));
+    }
+
+    @Test
+    public void testConsistentWithSimpleNamePermissions() throws InvalidNameException {
+        final String[] names = { "", "a", "a/b", "a/*", "a/-", "*", "-", "*/b", "a/b/c", "a/*/c", "*/*/-", "b/-" };
+        for (String granted : names) {
+            final PermissionCollection collection = collectionOf(new TestPermission(granted, "lookup"));
+            for (String checked : names) {
+                final boolean expected = SimpleNamePermissions.impliesName(new SimpleName(granted), new SimpleName(checked));
+                Assert.assertEquals(granted + " implies " + checked, expected, collection.implies(new TestPermission(checked, "lookup")));
+            }
+        }
+    }
+
+    private static PermissionCollection collectionOf(TestPermission... permissions) {
+        final PermissionCollection collection = permissions[0].newPermissionCollection();
+        for (TestPermission permission : permissions) {
+            collection.add(permission);
+        }
+        return collection;
+    }
+
+    static final class TestPermission extends AbstractNamingPermission<TestPermission> {
+        private static final long serialVersionUID = 1L;
+
+        TestPermission(final String name, final String actions) throws InvalidNameException {
+            super(name, actions);
+        }
+
+        TestPermission(final SimpleName simpleName, final int actionBits) {
+            super(simpleName, actionBits);
+        }
+
+        protected TestPermission constructNew(final SimpleName simpleName, final int actionBits) {
+            return new TestPermission(simpleName, actionBits);
+        }
+
+        public boolean actionsEquals(final String actions) {
+            return getActionBits() == parseActions(actions);
+        }
+
+        public TestPermission withName(final String name) {
+            try {
+                return new TestPermission(name, getActions());
+            } catch (InvalidNameException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+}